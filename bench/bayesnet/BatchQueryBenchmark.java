@@ -0,0 +1,42 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BatchQueryExecutor} answering a batch of 1000 random queries (methods 2 and 3) on big_net.xml,
+ * with different numbers of threads. On a multi-core machine the time per batch should drop close to linearly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchQueryBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<String> queries;
+    private BatchQueryExecutor executor;
+
+    @Setup
+    public void setup() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        queries = SyntheticNetworks.randomQueries(bayesNet, 1000, "23", 42);
+        executor = new BatchQueryExecutor(bayesNet, threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public List<QueryResult> answerAll() {
+        return executor.answerAll(queries);
+    }
+}
@@ -0,0 +1,85 @@
+package bayesnet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the cold-start time of loading a network from BIFXML ({@link BifXmlLoader}) and from a snapshot
+ * ({@link NetworkSnapshot}). JMH warms up the JVM, so instead every load runs in a new JVM, like a short-lived worker:
+ * <pre>
+ * java -cp target/benchmarks.jar bayesnet.ColdStart big_net.xml synthetic-10000
+ * </pre>
+ * For each network and format it reports the median time of the load itself, and of the whole process (JVM start,
+ * load and exit), over {@value #RUNS} runs.
+ */
+public class ColdStart {
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--load")) {
+            loadOnce(args[1]);
+            return;
+        }
+
+        for (String network : args) {
+            File xml = SyntheticNetworks.file(network);
+            File snapshot = File.createTempFile("cold-start", NetworkSnapshot.EXTENSION);
+            snapshot.deleteOnExit();
+            NetworkSnapshot.save(BifXmlLoader.load(xml.getPath()), snapshot.getPath());
+
+            for (File file : new File[]{xml, snapshot}) {
+                double[] loadMillis = new double[RUNS];
+                double[] processMillis = new double[RUNS];
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    loadMillis[run] = runLoad(file);
+                    processMillis[run] = (System.nanoTime() - start) / 1e6;
+                }
+                System.out.printf("%s (%s, %d KB): load %.1f ms, process %.1f ms%n", network,
+                        file == xml ? "BIFXML" : "snapshot", file.length() / 1024, median(loadMillis), median(processMillis));
+            }
+        }
+    }
+
+    /**
+     * Loads the file in a new JVM.
+     *
+     * @return the time of the load, in milliseconds
+     */
+    private static double runLoad(File file) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                ColdStart.class.getName(), "--load", file.getPath()));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            output = reader.readLine();
+        }
+        if (process.waitFor() != 0 || output == null) {
+            throw new IllegalStateException("Loading " + file + " failed: " + output);
+        }
+        return Double.parseDouble(output);
+    }
+
+    private static void loadOnce(String fileName) throws Exception {
+        long start = System.nanoTime();
+        BayesNet bayesNet = fileName.endsWith(NetworkSnapshot.EXTENSION)
+                ? NetworkSnapshot.load(fileName)
+                : BifXmlLoader.load(fileName);
+        long elapsed = System.nanoTime() - start;
+        if (bayesNet.variables.isEmpty()) {
+            throw new IllegalStateException("Empty network: " + fileName);
+        }
+        System.out.println(elapsed / 1e6);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,85 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link Factor} operations on factors of binary variables.
+ * <p>
+ * {@code join} joins two factors over 3/4 of the variables each (they share half of them), so every operation
+ * produces {@code 2^numVariables} rows. With {@code logSpace} the factors hold logarithms (see {@link Factor#toLogSpace()}).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FactorBenchmark {
+
+    @Param({"8", "16", "20"})
+    public int numVariables;
+
+    @Param({"false", "true"})
+    public boolean logSpace;
+
+    private Factor f1;
+    private Factor f2;
+    private Factor joined;
+    private Variable eliminated;
+    private List<VariableOutcome> evidences;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<Variable> variables = new ArrayList<>();
+        for (int i = 0; i < numVariables; i++) {
+            variables.add(new Variable("V" + i, Arrays.asList("T", "F")));
+        }
+        int split = numVariables / 4;
+        f1 = randomFactor(variables.subList(0, numVariables - split), random);
+        f2 = randomFactor(variables.subList(split, numVariables), random);
+        if (logSpace) {
+            f1 = f1.toLogSpace();
+            f2 = f2.toLogSpace();
+        }
+        joined = Factor.join(f1, f2);
+        eliminated = variables.get(numVariables / 2);
+        evidences = Arrays.asList(
+                new VariableOutcome(variables.get(1), "T"),
+                new VariableOutcome(variables.get(numVariables - 2), "F"));
+    }
+
+    private static Factor randomFactor(List<Variable> variables, Random random) {
+        double[] probabilities = new double[1 << variables.size()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = random.nextDouble();
+        }
+        return new Factor(variables, probabilities);
+    }
+
+    @Benchmark
+    public Factor join() {
+        return Factor.join(f1, f2);
+    }
+
+    @Benchmark
+    public Factor eliminate() {
+        return joined.eliminate(eliminated);
+    }
+
+    @Benchmark
+    public Factor setEvidences() {
+        return joined.setEvidences(evidences);
+    }
+
+    @Benchmark
+    public Factor normalize() {
+        return joined.normalize();
+    }
+}
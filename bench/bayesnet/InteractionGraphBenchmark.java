@@ -0,0 +1,54 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the elimination order heuristics of {@link InteractionGraph} over the graph of all the CPTs of a network.
+ * {@code largestFactorSize} predicts the largest factor of the order of the heuristic.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InteractionGraphBenchmark {
+
+    @Param({"alarm_net.xml", "big_net.xml", "synthetic-64", "synthetic-256"})
+    public String network;
+
+    @Param({"MIN_DEGREE", "MIN_FILL", "WEIGHTED_MIN_FILL", "MIN_WEIGHT"})
+    public InteractionGraph.Heuristic heuristic;
+
+    private InteractionGraph graph;
+    private Set<Variable> variablesToEliminate;
+    private List<Variable> order;
+
+    @Setup
+    public void setup() throws Exception {
+        BayesNet bayesNet = SyntheticNetworks.load(network);
+        List<Factor> factors = new ArrayList<>();
+        for (Variable variable : bayesNet.variables.values()) {
+            factors.add(variable.getFactor());
+        }
+        graph = new InteractionGraph(factors);
+        variablesToEliminate = new HashSet<>(bayesNet.variables.values());
+        order = graph.eliminationOrder(heuristic, variablesToEliminate);
+    }
+
+    @Benchmark
+    public List<Variable> eliminationOrder() {
+        return graph.eliminationOrder(heuristic, variablesToEliminate);
+    }
+
+    @Benchmark
+    public long largestFactorSize() {
+        return graph.largestFactorSize(order);
+    }
+}
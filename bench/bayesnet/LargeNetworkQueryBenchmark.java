@@ -0,0 +1,37 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BayesNet#answerQuery(String)} with the variable elimination methods and likelihood weighting on generated networks.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LargeNetworkQueryBenchmark {
+
+    @Param({"synthetic-64", "synthetic-256"})
+    public String network;
+
+    @Param({"2", "3", "4", "S", "G"})
+    public String method;
+
+    private BayesNet bayesNet;
+    private String query;
+
+    @Setup
+    public void setup() throws Exception {
+        bayesNet = SyntheticNetworks.load(network);
+        query = SyntheticNetworks.query(network, method);
+    }
+
+    @Benchmark
+    public QueryResult answerQuery() {
+        return bayesNet.answerQuery(query);
+    }
+}
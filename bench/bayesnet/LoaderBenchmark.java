@@ -0,0 +1,36 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BifXmlLoader#load(String)} on the example networks and on a generated network of 10000 variables
+ * (written to a temporary file). The gc profiler reports the bytes allocated per load; see {@link LoaderFootprint} for
+ * the peak heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    @Param({"alarm_net.xml", "big_net.xml", "synthetic-10000"})
+    public String network;
+
+    private String fileName;
+
+    @Setup
+    public void setup() throws Exception {
+        File file = SyntheticNetworks.file(network);
+        fileName = file.getPath();
+    }
+
+    @Benchmark
+    public BayesNet load() throws Exception {
+        return BifXmlLoader.load(fileName);
+    }
+}
@@ -0,0 +1,52 @@
+package bayesnet;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Reports the time and the peak heap of loading networks with {@link BifXmlLoader}, which JMH does not measure.
+ * Run it in its own JVM, so nothing else uses the heap:
+ * <pre>
+ * java -cp target/benchmarks.jar bayesnet.LoaderFootprint alarm_net.xml big_net.xml synthetic-10000
+ * </pre>
+ * The peak is the sum of the peaks of the heap pools during the load, so it is an upper bound of the live heap.
+ */
+public class LoaderFootprint {
+
+    public static void main(String[] args) throws Exception {
+        for (String network : args) {
+            File file = SyntheticNetworks.file(network);
+
+            System.gc();
+            long before = usedHeap();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long start = System.nanoTime();
+            BayesNet bayesNet = BifXmlLoader.load(file.getPath());
+            long elapsed = System.nanoTime() - start;
+            long peak = peakHeap();
+
+            System.gc();
+            long retained = usedHeap() - before;
+            System.out.printf("%s: %d variables, %.1f ms, peak heap %.1f MB, retained %.1f MB%n", network,
+                    bayesNet.variables.size(), elapsed / 1e6, (peak - before) / 1e6, retained / 1e6);
+        }
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,46 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BayesNet#answerQuery(String)} end to end, for each query method (the exact methods, and likelihood weighting with the default options).
+ * Method 1 enumerates every assignment of the hidden variables, so it only runs on the small networks here;
+ * see {@link LargeNetworkQueryBenchmark} for the larger ones. With {@code -p metrics=true} the queries record into a
+ * {@link QueryMetrics}, to measure the cost of the instrumentation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+
+    @Param({"alarm_net.xml", "big_net.xml", "synthetic-16"})
+    public String network;
+
+    @Param({"1", "2", "3", "4", "S", "G"})
+    public String method;
+
+    @Param({"false"})
+    public boolean metrics;
+
+    private BayesNet bayesNet;
+    private String query;
+
+    @Setup
+    public void setup() throws Exception {
+        bayesNet = SyntheticNetworks.load(network);
+        query = SyntheticNetworks.query(network, method);
+        if (metrics) {
+            bayesNet.setQueryMetrics(new QueryMetrics());
+        }
+    }
+
+    @Benchmark
+    public QueryResult answerQuery() {
+        return bayesNet.answerQuery(query);
+    }
+}
@@ -0,0 +1,97 @@
+package bayesnet;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the throughput of a {@link QueryServer} on the loopback interface: several clients each pipeline the same
+ * number of random queries over their own connection, and read the responses while they write.
+ * <pre>
+ * java -cp target/benchmarks.jar bayesnet.QueryServerLoad alarm_net.xml 4 20000
+ * </pre>
+ * The arguments are the network, the number of clients and the number of queries per client; the server runs in the
+ * same JVM with one worker per processor. A warm-up round runs first.
+ */
+public class QueryServerLoad {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: QueryServerLoad <network> <clients> <queries per client>");
+            System.exit(1);
+        }
+        int clients = Integer.parseInt(args[1]);
+        int count = Integer.parseInt(args[2]);
+        BayesNet bayesNet = SyntheticNetworks.load(args[0]);
+        List<String> queries = SyntheticNetworks.randomQueries(bayesNet, count, "23", 42);
+
+        try (QueryServer server = new QueryServer(Runtime.getRuntime().availableProcessors(), 1024)) {
+            server.register("bench", bayesNet);
+            int port = server.start(0);
+            for (String round : new String[]{"warm-up", "measured"}) {
+                long start = System.nanoTime();
+                run(port, clients, queries);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s: %d clients x %d queries in %.2f s, %.0f queries/s%n",
+                        round, clients, count, seconds, clients * count / seconds);
+            }
+        }
+    }
+
+    private static void run(int port, int clients, List<String> queries) throws Exception {
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    runClient(port, queries);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void runClient(int port, List<String> queries) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Thread writer = new Thread(() -> {
+                try {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    for (String query : queries) {
+                        out.write("QUERY bench " + query + "\n");
+                    }
+                    out.write("QUIT\n");
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.start();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            int responses = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("ERROR")) {
+                    throw new IllegalStateException(line);
+                }
+                responses++;
+            }
+            writer.join();
+            if (responses != queries.size()) {
+                throw new IllegalStateException(responses + " responses to " + queries.size() + " queries");
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bayesnet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BayesNet#answerQuery(String)} with dense and sparse factors (see {@link BayesNet#setSparseFactors(boolean)}),
+ * on the mostly deterministic {@code gates-<n>} networks and, for comparison, on a random one.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SparseFactorBenchmark {
+
+    @Param({"gates-256", "gates-1024", "synthetic-256"})
+    public String network;
+
+    @Param({"2", "3"})
+    public String method;
+
+    @Param({"false", "true"})
+    public boolean sparse;
+
+    private BayesNet bayesNet;
+    private String query;
+
+    @Setup
+    public void setup() throws Exception {
+        bayesNet = SyntheticNetworks.load(network);
+        bayesNet.setSparseFactors(sparse);
+        query = SyntheticNetworks.query(network, method);
+    }
+
+    @Benchmark
+    public QueryResult answerQuery() {
+        return bayesNet.answerQuery(query);
+    }
+}
@@ -0,0 +1,237 @@
+package bayesnet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Generates random Bayesian networks for the benchmarks.
+ * <p>
+ * The variables are named {@code X0, X1, ...} and are in topological order. Each variable takes its parents from the
+ * {@code window} variables before it, which keeps the treewidth (and so the size of the eliminated factors) bounded
+ * while the network grows. The networks named {@code gates-<n>} are mostly deterministic: each variable with parents is
+ * the AND, OR or XOR of them, which makes most rows of their CPTs and factors 0.
+ */
+public class SyntheticNetworks {
+    public static final String PREFIX = "synthetic-";
+    public static final String GATES_PREFIX = "gates-";
+
+    private SyntheticNetworks() {
+    }
+
+    /**
+     * Loads a network by name: either a BIFXML file, or {@code synthetic-<n>} or {@code gates-<n>} for a generated network
+     * of n variables.
+     *
+     * @param name the file name or the synthetic network name
+     * @return the loaded network
+     */
+    public static BayesNet load(String name) throws Exception {
+        if (name.startsWith(PREFIX)) {
+            return generate(Integer.parseInt(name.substring(PREFIX.length())), 4, 3, 42);
+        }
+        if (name.startsWith(GATES_PREFIX)) {
+            return generateGates(Integer.parseInt(name.substring(GATES_PREFIX.length())), 6, 3, 42);
+        }
+        return BifXmlLoader.load(name);
+    }
+
+    /**
+     * Returns a query for the given network, for the given method.
+     * The query asks about the last variable given the first one, and avoids the direct CPT lookup.
+     *
+     * @param name   the network name (see {@link #load(String)})
+     * @param method the query method, e.g. "3", "S" or "G"
+     * @return the query string
+     */
+    public static String query(String name, String method) {
+        switch (name) {
+            case "alarm_net.xml":
+                return "P(B=T|J=T,M=T)," + method;
+            case "big_net.xml":
+                return "P(D1=T|B0=v3,C2=v1)," + method;
+            default:
+                int n = Integer.parseInt(name.substring(name.lastIndexOf('-') + 1));
+                if (name.startsWith(GATES_PREFIX)) {
+                    // evidence on the root X0 and on the last gate
+                    return "P(X" + (n / 2) + "=T|X0=T,X" + (n - 1) + "=F)," + method;
+                }
+                return "P(X" + (n - 1) + "=T|X0=T,X" + (n / 2) + "=F)," + method;
+        }
+    }
+
+    /**
+     * Generates random conditional queries: one query variable given two evidence variables.
+     * Evidence that is a strict subset of the query variable's parents is avoided, as the direct CPT lookup expects all of them.
+     *
+     * @param bayesNet the network
+     * @param count    the number of queries
+     * @param methods  the methods to pick from, e.g. "23"
+     * @param seed     the random seed
+     * @return the queries
+     */
+    public static List<String> randomQueries(BayesNet bayesNet, int count, String methods, long seed) {
+        Random random = new Random(seed);
+        List<Variable> variables = new ArrayList<>(bayesNet.variables.values());
+        variables.sort(Comparator.comparing(Variable::getName));
+        List<String> queries = new ArrayList<>();
+        while (queries.size() < count) {
+            Collections.shuffle(variables, random);
+            Variable queryVar = variables.get(0);
+            List<Variable> evidence = variables.subList(1, 3);
+            if (queryVar.getParents().containsAll(evidence) && !evidence.containsAll(queryVar.getParents())) {
+                continue;
+            }
+            queries.add("P(" + randomOutcome(queryVar, random) + "|" + randomOutcome(evidence.get(0), random) + ","
+                    + randomOutcome(evidence.get(1), random) + ")," + methods.charAt(random.nextInt(methods.length())));
+        }
+        return queries;
+    }
+
+    private static String randomOutcome(Variable variable, Random random) {
+        List<String> outcomes = variable.getOutcomes();
+        return variable.getName() + "=" + outcomes.get(random.nextInt(outcomes.size()));
+    }
+
+    /**
+     * Generates a random network of binary variables.
+     *
+     * @param numVariables the number of variables
+     * @param window       the parents of a variable are taken from the {@code window} variables before it
+     * @param maxParents   the maximal number of parents of a variable
+     * @param seed         the random seed
+     * @return the generated network
+     */
+    public static BayesNet generate(int numVariables, int window, int maxParents, long seed) {
+        Random random = new Random(seed);
+        BayesNet bayesNet = new BayesNet();
+        List<String> outcomes = Arrays.asList("T", "F");
+        for (int i = 0; i < numVariables; i++) {
+            bayesNet.addVariable("X" + i, outcomes);
+        }
+
+        for (int i = 0; i < numVariables; i++) {
+            List<String> parents = new ArrayList<>();
+            for (int j = Math.max(0, i - window); j < i && parents.size() < maxParents; j++) {
+                if (random.nextBoolean()) {
+                    parents.add("X" + j);
+                }
+            }
+            // every row of the CPT is a distribution over {T, F}
+            double[] probabilities = new double[2 << parents.size()];
+            for (int row = 0; row < probabilities.length; row += 2) {
+                probabilities[row] = 0.05 + 0.9 * random.nextDouble();
+                probabilities[row + 1] = 1 - probabilities[row];
+            }
+            bayesNet.addDependency("X" + i, parents, probabilities);
+        }
+        return bayesNet;
+    }
+
+    /**
+     * Generates a random network of binary variables that are mostly logical gates: a variable without parents has a
+     * random prior, any other one is the AND, OR or XOR of its parents, with a deterministic CPT.
+     *
+     * @param numVariables the number of variables
+     * @param window       the parents of a variable are taken from the {@code window} variables before it
+     * @param maxParents   the maximal number of parents of a variable
+     * @param seed         the random seed
+     * @return the generated network
+     */
+    public static BayesNet generateGates(int numVariables, int window, int maxParents, long seed) {
+        Random random = new Random(seed);
+        BayesNet bayesNet = new BayesNet();
+        List<String> outcomes = Arrays.asList("T", "F");
+        for (int i = 0; i < numVariables; i++) {
+            bayesNet.addVariable("X" + i, outcomes);
+        }
+
+        for (int i = 0; i < numVariables; i++) {
+            List<String> parents = new ArrayList<>();
+            for (int j = Math.max(0, i - window); j < i && parents.size() < maxParents; j++) {
+                if (random.nextBoolean()) {
+                    parents.add("X" + j);
+                }
+            }
+            double[] probabilities = new double[2 << parents.size()];
+            if (parents.isEmpty()) {
+                probabilities[0] = 0.05 + 0.9 * random.nextDouble();
+                probabilities[1] = 1 - probabilities[0];
+            } else {
+                int gate = random.nextInt(3);
+                for (int row = 0; row < probabilities.length; row += 2) {
+                    // the outcome index of each parent, 0 for T: the first parent is the highest bit of the row
+                    int falseParents = Integer.bitCount(row >> 1);
+                    boolean value = gate == 0 ? falseParents == 0 : gate == 1 ? falseParents < parents.size() : (parents.size() - falseParents) % 2 == 1;
+                    probabilities[value ? row : row + 1] = 1.0;
+                }
+            }
+            bayesNet.addDependency("X" + i, parents, probabilities);
+        }
+        return bayesNet;
+    }
+
+    /**
+     * Returns a BIFXML file for a network name: the file itself, or for {@code synthetic-<n>} and {@code gates-<n>} the generated network
+     * written to a temporary file (deleted when the JVM exits).
+     *
+     * @param name the file name or the synthetic network name
+     * @return the file
+     */
+    public static File file(String name) throws IOException {
+        if (!name.startsWith(PREFIX) && !name.startsWith(GATES_PREFIX)) {
+            return new File(name);
+        }
+        File file = File.createTempFile(name, ".xml");
+        file.deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file.toPath())) {
+            writeBifXml(name.startsWith(PREFIX)
+                    ? generate(Integer.parseInt(name.substring(PREFIX.length())), 4, 3, 42)
+                    : generateGates(Integer.parseInt(name.substring(GATES_PREFIX.length())), 6, 3, 42), writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a network as BIFXML. The probabilities are rounded to 4 digits, like in hand-written tables.
+     *
+     * @param bayesNet the network
+     * @param writer   where to write it
+     */
+    public static void writeBifXml(BayesNet bayesNet, Writer writer) throws IOException {
+        List<Variable> variables = new ArrayList<>(bayesNet.variables.values());
+        writer.write("<?xml version=\"1.0\"?>\n<BIF VERSION=\"0.3\">\n<NETWORK>\n");
+        for (Variable variable : variables) {
+            writer.write("<VARIABLE TYPE=\"nature\">\n\t<NAME>" + variable.getName() + "</NAME>\n");
+            for (String outcome : variable.getOutcomes()) {
+                writer.write("\t<OUTCOME>" + outcome + "</OUTCOME>\n");
+            }
+            writer.write("</VARIABLE>\n");
+        }
+        for (Variable variable : variables) {
+            writer.write("<DEFINITION>\n\t<FOR>" + variable.getName() + "</FOR>\n");
+            for (Variable parent : variable.getParents()) {
+                writer.write("\t<GIVEN>" + parent.getName() + "</GIVEN>\n");
+            }
+            writer.write("\t<TABLE>");
+            // the rows of the CPT, the variable itself changes fastest
+            Factor cpt = variable.getFactor();
+            List<Variable> cptVariables = cpt.getVariables();
+            int[] assignment = new int[cptVariables.size()];
+            for (int row = 0; row < cpt.getSize(); row++) {
+                List<VariableOutcome> outcomes = new ArrayList<>();
+                for (int i = 0; i < assignment.length; i++) {
+                    outcomes.add(new VariableOutcome(cptVariables.get(i), cptVariables.get(i).getOutcomes().get(assignment[i])));
+                }
+                writer.write((row == 0 ? "" : " ") + Math.round(cpt.getProbability(outcomes) * 10000) / 10000.0);
+                for (int i = assignment.length - 1; i >= 0 && ++assignment[i] == cptVariables.get(i).getOutcomes().size(); i--) {
+                    assignment[i] = 0;
+                }
+            }
+            writer.write("</TABLE>\n</DEFINITION>\n");
+        }
+        writer.write("</NETWORK>\n</BIF>\n");
+    }
+}
@@ -1,78 +1,38 @@
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import bayesnet.BatchQueryExecutor;
+import bayesnet.BayesNet;
+import bayesnet.NetworkSnapshot;
+import bayesnet.QueryResult;
+import bayesnet.QueryServer;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Ex1 {
 
-    private static double[] parseProbabilities(String probabilities) {
-        String[] probStrings = probabilities.split(" ");
-        double[] probArray = new double[probStrings.length];
-        for (int i = 0; i < probStrings.length; i++) {
-            probArray[i] = Double.parseDouble(probStrings[i]);
-        }
-        return probArray;
+    /**
+     * Loads the network: a snapshot if the file ends with ".bnet" (see {@link NetworkSnapshot}), otherwise a BIFXML file.
+     */
+    public static BayesNet getBayesNet(String fileName) throws IOException, XMLStreamException {
+        return QueryServer.loadNetwork(fileName);
     }
 
-    public static BayesNet getBayesNet(String fileName) throws IOException, SAXException, ParserConfigurationException {
-
-        BayesNet bayesNet = new BayesNet();
-
-        File xmlFile = new File(fileName);
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(xmlFile);
-
-        doc.getDocumentElement().normalize();
-
-        // get variable nodes and the outcomes
-        NodeList variableNodes = doc.getElementsByTagName("VARIABLE");
-        for (int i = 0; i < variableNodes.getLength(); i++) {
-            Element variableElement = (Element) variableNodes.item(i);
-            String variableName = variableElement.getElementsByTagName("NAME").item(0).getTextContent();
-            List<String> outcomes = new ArrayList<>();
-            NodeList outcomeNodes = variableElement.getElementsByTagName("OUTCOME");
-            for (int j = 0; j < outcomeNodes.getLength(); j++) {
-                String outcome = outcomeNodes.item(j).getTextContent();
-                outcomes.add(outcome);
-            }
-
-            bayesNet.addVariable(variableName, outcomes);
-        }
-
-        // get the dependencies
-        NodeList definitionNodes = doc.getElementsByTagName("DEFINITION");
-
-        for (int i = 0; i < definitionNodes.getLength(); i++) {
-            Element definitionElement = (Element) definitionNodes.item(i);
-            String forVariableName = definitionElement.getElementsByTagName("FOR").item(0).getTextContent();
-
-            // get the parents
-            List<String> parents = new ArrayList<>();
-            NodeList parentNodes = definitionElement.getElementsByTagName("GIVEN");
-            for (int j = 0; j < parentNodes.getLength(); j++) {
-                String parentName = parentNodes.item(j).getTextContent();
-                parents.add(parentName);
+    /**
+     * Reads the network and the queries from `input.txt` and writes the answers to `output.txt`, in the order of the queries.
+     *
+     * @param args optional: "--threads n" answers the queries on n threads (default 1)
+     */
+    public static void main(String[] args) {
+        int threads = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
             }
-
-            // get the probabilities
-            String probabilities = definitionElement.getElementsByTagName("TABLE").item(0).getTextContent();
-
-            // add the dependency to the BayesNet
-            bayesNet.addDependency(forVariableName, parents, parseProbabilities(probabilities));
         }
 
-        return bayesNet;
-    }
-
-    public static void main(String[] args) {
         BayesNet bayesNet;
         String inputFileName = "input.txt";
         String outputFileName = "output.txt";
@@ -85,18 +45,26 @@ public class Ex1 {
             bayesNet = getBayesNet(fileName);
 
             // read query line by line until EOF
+            List<String> queries = new ArrayList<>();
             String line;
             while ((line = reader.readLine()) != null) {
                 if (line.trim().isEmpty()) {
                     continue; // skip empty lines
                 }
-                double res = bayesNet.answerQuery(line);
-                // write the output to the writer
-                writer.write(String.format("%.5f,%d,%d\n", res, Counter.instance.getSumCounter(), Counter.instance.getProductCounter()));
-                Counter.instance.reset();
+                queries.add(line);
+            }
+
+            List<QueryResult> results;
+            try (BatchQueryExecutor executor = new BatchQueryExecutor(bayesNet, threads)) {
+                results = executor.answerAll(queries);
+            }
+
+            // write the output to the writer
+            for (QueryResult res : results) {
+                writer.write(String.format("%.5f,%d,%d\n", res.getProbability(), res.getSumCount(), res.getProductCount()));
             }
 
-        } catch (IOException | ParserConfigurationException | SAXException e) {
+        } catch (IOException | XMLStreamException e) {
             throw new RuntimeException(e);
         }
     }
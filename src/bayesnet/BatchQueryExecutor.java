@@ -0,0 +1,131 @@
+package bayesnet;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers a batch of queries against one {@link BayesNet} on a {@link ForkJoinPool}.
+ * The queries of methods 2 and 3 with the same evidence form a group that is answered by one task with
+ * {@link BayesNet#answerQueries(List)}, so they share their work. A group of more than {@value #RANGE_SIZE} queries is
+ * split into chunks of that many, after sorting it by query shape, so the queries that read the same final factor stay
+ * together and a large group (e.g. all the queries without evidence) still runs on several threads. The groups and the
+ * other queries are split into ranges that are answered in parallel, and the results are returned in the input order.
+ */
+public class BatchQueryExecutor implements AutoCloseable {
+    /**
+     * Ranges with at most this many queries are answered by a single task, and larger groups are split into chunks of
+     * this many queries.
+     */
+    private static final int RANGE_SIZE = 16;
+
+    private final BayesNet bayesNet;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param bayesNet    the network to query, it is shared read-only between the threads
+     * @param parallelism the number of threads answering queries
+     */
+    public BatchQueryExecutor(BayesNet bayesNet, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.bayesNet = bayesNet;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Answers all the queries.
+     *
+     * @param queries the queries, in the format of {@link BayesNet#answerQuery(String)}
+     * @return the results, in the order of the queries
+     */
+    public List<QueryResult> answerAll(List<String> queries) {
+        Map<String, List<Integer>> evidenceGroups = new LinkedHashMap<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            String evidence = BayesNet.evidenceGroup(queries.get(i));
+            if (evidence == null) {
+                groups.add(Collections.singletonList(i));
+            } else {
+                List<Integer> group = evidenceGroups.get(evidence);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    evidenceGroups.put(evidence, group);
+                    groups.add(group);
+                }
+                group.add(i);
+            }
+        }
+
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            if (group.size() <= RANGE_SIZE) {
+                chunks.add(group);
+                continue;
+            }
+            group.sort(Comparator.comparing(i -> BayesNet.queryGroup(queries.get(i))));
+            for (int from = 0; from < group.size(); from += RANGE_SIZE) {
+                chunks.add(group.subList(from, Math.min(from + RANGE_SIZE, group.size())));
+            }
+        }
+        int[] offsets = new int[chunks.size() + 1]; // the number of queries in the chunks before each chunk
+        for (int g = 0; g < chunks.size(); g++) {
+            offsets[g + 1] = offsets[g] + chunks.get(g).size();
+        }
+
+        QueryResult[] results = new QueryResult[queries.size()];
+        pool.invoke(new AnswerRange(queries, chunks, offsets, results, 0, chunks.size()));
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Answers the groups of queries in [from, to), splitting the range in half until it has at most
+     * {@value #RANGE_SIZE} queries or a single group.
+     */
+    private class AnswerRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> queries;
+        private final List<List<Integer>> groups;
+        private final int[] offsets;
+        private final QueryResult[] results;
+        private final int from;
+        private final int to;
+
+        AnswerRange(List<String> queries, List<List<Integer>> groups, int[] offsets, QueryResult[] results, int from, int to) {
+            this.queries = queries;
+            this.groups = groups;
+            this.offsets = offsets;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || offsets[to] - offsets[from] <= RANGE_SIZE) {
+                for (int g = from; g < to; g++) {
+                    List<Integer> group = groups.get(g);
+                    List<String> groupQueries = new ArrayList<>();
+                    for (int i : group) {
+                        groupQueries.add(queries.get(i));
+                    }
+                    List<QueryResult> groupResults = bayesNet.answerQueries(groupQueries);
+                    for (int j = 0; j < group.size(); j++) {
+                        results[group.get(j)] = groupResults.get(j);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new AnswerRange(queries, groups, offsets, results, from, middle),
+                    new AnswerRange(queries, groups, offsets, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,1070 @@
+package bayesnet;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class BayesNet {
+    /**
+     * The factors that {@link #answerQueries(List)} keeps for the queries of an evidence group; beyond it the least
+     * recently used ones are recomputed when needed.
+     */
+    static final int BATCH_MEMO_CAPACITY = 1024;
+
+    HashMap<String, Variable> variables;
+    private final PlanCache planCache;
+    private JunctionTree junctionTree; // built on the first query with method 4
+    private Map<Variable, List<Variable>> children; // built with the ids and ancestors of the variables, null when out of date
+    private volatile boolean dSeparationPruning;
+    private CompiledNetwork compiledNetwork; // built on the first query with an approximate method
+    private volatile SamplingOptions samplingOptions = SamplingOptions.defaults();
+    private long version; // incremented whenever the network changes
+    private volatile OrderingSearch orderingSearch; // null to eliminate in min-fill order
+    private volatile MemoryBudget memoryBudget; // null for no limit
+    private volatile boolean logSpace;
+    private volatile boolean sparseFactors;
+    private volatile QueryMetrics queryMetrics; // null to record nothing
+    private long junctionTreeSize = -1; // the rows of the largest clique of the junction tree, -1 until predicted
+
+    public BayesNet() {
+        this(PlanCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param planCacheCapacity the number of query plans to cache (see {@link PlanCache})
+     */
+    public BayesNet(int planCacheCapacity) {
+        this.variables = new HashMap<>();
+        this.planCache = new PlanCache(planCacheCapacity);
+    }
+
+    /**
+     * @return the junction tree of the network, built on the first call
+     */
+    private synchronized JunctionTree getJunctionTree() {
+        if (junctionTree == null) {
+            junctionTree = new JunctionTree(variables.values(), orderingSearch);
+        }
+        return junctionTree;
+    }
+
+    /**
+     * Predicts the largest clique of the junction tree without building it, from the same elimination order.
+     *
+     * @return the rows of the largest clique potential
+     */
+    private synchronized long getJunctionTreeSize() {
+        if (junctionTreeSize == -1) {
+            List<Factor> cpts = new ArrayList<>();
+            for (Variable variable : variables.values()) {
+                cpts.add(variable.getFactor());
+            }
+            InteractionGraph moralGraph = new InteractionGraph(cpts);
+            junctionTreeSize = moralGraph.largestFactorSize(JunctionTree.triangulationOrder(moralGraph, variables.values(), orderingSearch));
+        }
+        return junctionTreeSize;
+    }
+
+    /**
+     * @return the network compiled for the samplers, built on the first call
+     */
+    private synchronized CompiledNetwork getCompiledNetwork() {
+        if (compiledNetwork == null) {
+            compiledNetwork = new CompiledNetwork(variables.values());
+        }
+        return compiledNetwork;
+    }
+
+    /**
+     * Drops everything that was computed from the structure of the network.
+     */
+    synchronized void structureChanged() {
+        version++;
+        planCache.clear();
+        if (orderingSearch != null) {
+            orderingSearch.clear();
+        }
+        junctionTree = null;
+        junctionTreeSize = -1;
+        compiledNetwork = null;
+        if (children != null) {
+            children = null;
+            for (Variable variable : variables.values()) {
+                variable.setAncestors(null);
+            }
+        }
+    }
+
+    /**
+     * @return a number that changes whenever a variable or a CPT of the network changes
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Indexes the structure of the network, if it changed since the last call: gives every variable a dense id, computes
+     * the ancestors of every variable as a {@link BitSet} of ids, and the children of every variable.
+     *
+     * @return the children of every variable
+     */
+    private synchronized Map<Variable, List<Variable>> indexVariables() {
+        if (children != null) {
+            return children;
+        }
+        Map<Variable, List<Variable>> children = new HashMap<>();
+        int id = 0;
+        for (Variable variable : variables.values()) {
+            variable.setId(id++);
+            variable.setAncestors(null);
+            children.put(variable, new ArrayList<>());
+        }
+        for (Variable variable : variables.values()) {
+            for (Variable parent : variable.getParents()) {
+                children.get(parent).add(variable);
+            }
+        }
+
+        // the ancestors of a variable are itself and the ancestors of its parents, so visit the parents first
+        Deque<Variable> toVisit = new ArrayDeque<>();
+        for (Variable root : variables.values()) {
+            toVisit.push(root);
+            while (!toVisit.isEmpty()) {
+                Variable variable = toVisit.peek();
+                if (variable.getAncestors() != null) {
+                    toVisit.pop();
+                    continue;
+                }
+                boolean parentsDone = true;
+                for (Variable parent : variable.getParents()) {
+                    if (parent.getAncestors() == null) {
+                        toVisit.push(parent);
+                        parentsDone = false;
+                    }
+                }
+                if (parentsDone) {
+                    BitSet ancestors = new BitSet(variables.size());
+                    ancestors.set(variable.getId());
+                    for (Variable parent : variable.getParents()) {
+                        ancestors.or(parent.getAncestors());
+                    }
+                    variable.setAncestors(ancestors);
+                    toVisit.pop();
+                }
+            }
+        }
+        this.children = children;
+        return children;
+    }
+
+    /**
+     * Sets whether methods 2 and 3 also prune the CPTs that are d-separated from the query by the evidence (Bayes-ball).
+     * By default only the CPTs of the ancestors of the query and evidence variables are used, which gives the sum and
+     * product counts of the assignment; with d-separation pruning the answers are the same, with fewer operations.
+     *
+     * @param dSeparationPruning true to prune the d-separated CPTs
+     */
+    public synchronized void setDSeparationPruning(boolean dSeparationPruning) {
+        this.dSeparationPruning = dSeparationPruning;
+        planCache.clear();
+    }
+
+    /**
+     * Sets the search for the elimination orders of methods 3 and 4, instead of the min-fill order. The search takes
+     * more time to plan a query, and the plans and orders are cached, so it pays off for large networks where min-fill
+     * can pick orders with much larger factors. Its orders may differ from the min-fill order, and so the counts.
+     *
+     * @param orderingSearch the search, used by this network only, or null for the min-fill order
+     */
+    public synchronized void setOrderingSearch(OrderingSearch orderingSearch) {
+        this.orderingSearch = orderingSearch;
+        if (orderingSearch != null) {
+            orderingSearch.clear();
+        }
+        planCache.clear();
+        junctionTree = null; // triangulated with the previous order
+        junctionTreeSize = -1;
+    }
+
+    public OrderingSearch getOrderingSearch() {
+        return orderingSearch;
+    }
+
+    /**
+     * Sets whether the joint probabilities and methods 1 to 3 compute in log space (see {@link Factor#toLogSpace()}):
+     * the products become sums of logarithms and the sums log-sum-exp, so long products over large networks do not
+     * underflow to 0. The answers differ from linear space by rounding only, at the cost of the logarithms and exponentials.
+     * The counts are the same. A joint probability that is too small for a double is still reported by
+     * {@link QueryResult#getLogProbability()}.
+     *
+     * @param logSpace true to compute in log space
+     */
+    public void setLogSpace(boolean logSpace) {
+        this.logSpace = logSpace;
+    }
+
+    public boolean isLogSpace() {
+        return logSpace;
+    }
+
+    /**
+     * Sets whether the factors of methods 2 and 3 may store only their non-zero rows (see {@link Factor#allowSparse()}).
+     * Each factor of the elimination switches to the sparse layout when at most {@value Factor#SPARSE_DENSITY} of its rows
+     * are non-zero, and the sparse operations only compute and count the non-zero rows, so the networks with deterministic
+     * CPTs (logical gates, one-hot encodings) and the queries whose evidence rules out most rows take less memory and
+     * fewer operations. The answers are the same. The plans and the memory budget still predict the dense sizes, an
+     * upper bound of the stored ones.
+     *
+     * @param sparseFactors true to allow sparse factors
+     */
+    public void setSparseFactors(boolean sparseFactors) {
+        this.sparseFactors = sparseFactors;
+    }
+
+    public boolean isSparseFactors() {
+        return sparseFactors;
+    }
+
+    /**
+     * Sets the metrics that the next queries record their phases and factor sizes into (see {@link QueryMetrics}).
+     * Several networks may share the same metrics.
+     *
+     * @param queryMetrics the metrics, or null to record nothing
+     */
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * Sets a limit on the factors of methods 2, 3 and 4 (see {@link MemoryBudget}). The largest factor of each plan is
+     * predicted before running it, and a plan that does not fit is replaced by a cheaper order, by sampling or by a
+     * {@link MemoryBudgetExceededException}, as the budget says.
+     *
+     * @param memoryBudget the budget, or null for no limit
+     */
+    public synchronized void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        planCache.clear();
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the options of the approximate query methods, for the next queries.
+     *
+     * @param samplingOptions the sampling options
+     */
+    public void setSamplingOptions(SamplingOptions samplingOptions) {
+        this.samplingOptions = Objects.requireNonNull(samplingOptions);
+    }
+
+    public SamplingOptions getSamplingOptions() {
+        return samplingOptions;
+    }
+
+    /**
+     * @return the cache of query plans, with its hit and miss metrics
+     */
+    public PlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Adds a variable to the BayesNet. <b> Make sure to add the variable first, the function asserts that the variable and all parent variables are present in the BayesNet. </b>
+     *
+     * @param name     the name of the variable
+     * @param outcomes the possible outcomes of the variable
+     */
+    public void addVariable(String name, List<String> outcomes) {
+        Variable variable = new Variable(name, outcomes);
+        variable.setNetwork(this);
+        this.variables.put(name, variable);
+        structureChanged();
+    }
+
+    /**
+     * Adds a dependency to the BayesNet. <b> Make sure to add the variable first, the function asserts that the variable and all parent variables are present in the BayesNet. </b>
+     *
+     * @param variableName  the name of the variable
+     * @param parents       the names of the parent variables
+     * @param probabilities the probabilities associated with the variable
+     * @throws AssertionError if the variable or any parent variable is not found
+     */
+    public void addDependency(String variableName, List<String> parents, double[] probabilities) {
+        addDependency(variableName, parents, probabilities, true);
+    }
+
+    /**
+     * Adds a dependency to the BayesNet, optionally handing the probabilities to the CPT without copying them.
+     *
+     * @param copy whether to copy the probabilities, or let the CPT own the array (see {@link #addDependency(String, List, double[])})
+     */
+    void addDependency(String variableName, List<String> parents, double[] probabilities, boolean copy) {
+        Variable variable = this.variables.get(variableName);
+        assert variable != null : "Variable not found: " + variableName;
+        List<Variable> parentVariables = new ArrayList<>();
+        for (String parentName : parents) {
+            Variable parentVariable = this.variables.get(parentName);
+            assert parentVariable != null : "Parent variable not found: " + parentName;
+            parentVariables.add(parentVariable);
+        }
+        variable.setParents(parentVariables);
+        variable.setCpt(probabilities, copy);
+        structureChanged();
+    }
+
+    /**
+     * Answers a query. The operations are counted per query, so the BayesNet can answer queries from several threads at once.
+     *
+     * @param query the query, either a joint probability "P(X=T,Y=F)" or "P(X=T|Y=F),n" where n is the method:
+     *              1 to 4 for the exact methods, S for likelihood weighting or G for Gibbs sampling (see
+     *              {@link #setSamplingOptions(SamplingOptions)})
+     * @return the probability and the number of sums and products used to calculate it
+     */
+    public QueryResult answerQuery(String query) {
+        return answerQuery(query, null);
+    }
+
+    /**
+     * Answers a query, reusing the intermediate factors of methods 2 and 3 that are in the memo, and adding the new ones.
+     *
+     * @param query the query (see {@link #answerQuery(String)})
+     * @param memo  the memo of an {@link InferenceSession}, or null
+     * @return the probability and the number of sums and products used to calculate it
+     */
+    QueryResult answerQuery(String query, FactorMemo memo) {
+        QueryMetrics metrics = queryMetrics;
+        if (metrics == null) {
+            return answerQuery(query, memo, null);
+        }
+        long start = System.nanoTime();
+        QueryResult result = answerQuery(query, memo, metrics);
+        metrics.record(QueryMetrics.Phase.QUERY, start);
+        return result;
+    }
+
+    private QueryResult answerQuery(String query, FactorMemo memo, QueryMetrics metrics) {
+        Counter counter = new Counter();
+        boolean logSpace = this.logSpace;
+        boolean sparse = this.sparseFactors;
+        double probability;
+        // if the query parenthesis, its joint probability query
+        if (query.endsWith(")")) {
+            if (logSpace) {
+                double logProbability = calculateJointLogProbabilityFromQuery(query, counter);
+                return new QueryResult(Math.exp(logProbability), logProbability, counter);
+            }
+            probability = calculateJointProbabilityFromQuery(query, counter);
+        } else if (query.charAt(query.length() - 1) == LikelihoodWeighting.METHOD) {
+            QueryParts qp = parseQueryAndEvidence(query, metrics);
+            return new LikelihoodWeighting(getCompiledNetwork()).estimate(qp.queryOutcomes, qp.evidenceOutcomes, samplingOptions, counter);
+        } else if (query.charAt(query.length() - 1) == GibbsSampler.METHOD) {
+            QueryParts qp = parseQueryAndEvidence(query, metrics);
+            return new GibbsSampler(getCompiledNetwork()).estimate(qp.queryOutcomes, qp.evidenceOutcomes, samplingOptions, counter);
+        } else {// it for the algorithm
+            char method = query.charAt(query.length() - 1); // get the method
+            QueryParts qp = parseQueryAndEvidence(query, metrics);
+            QueryPlan plan = getPlan(qp, method);
+            if (plan.sampling) {
+                // the elimination does not fit in the memory budget
+                return new LikelihoodWeighting(getCompiledNetwork()).estimate(qp.queryOutcomes, qp.evidenceOutcomes, samplingOptions, counter);
+            }
+            probability = calculateProbForComplexQuery(qp, plan, counter, memo, logSpace, sparse, metrics);
+        }
+        return new QueryResult(probability, counter);
+    }
+
+    private double calculateJointProbabilityFromQuery(String query, Counter counter) {
+        return calculateJointProbabilityFromVarOutcomeList(parseJointQuery(query), counter);
+    }
+
+    private List<VariableOutcome> parseJointQuery(String query) {
+        // remove the P, and the parenthesis
+        query = query.substring(2, query.length() - 1);
+
+        // split the query by the comma
+        String[] variables = query.split(",");
+
+        // create a list of variables and their outcomes
+        return parseVariableOutcomes(variables);
+    }
+
+    /**
+     * Computes a joint probability in log space: the sum of the logarithms of the CPT entries.
+     *
+     * @return the logarithm of the joint probability
+     */
+    private double calculateJointLogProbabilityFromQuery(String query, Counter counter) {
+        List<VariableOutcome> variableList = parseJointQuery(query);
+        double res = 0.0;
+        for (VariableOutcome vo : variableList) {
+            res += vo.getLogProbability(variableList);
+        }
+        // the sums of the logarithms replace `variableList.size() - 1` multiplications
+        counter.incrementProductCounter(variableList.size() - 1);
+        return res;
+    }
+
+    private static double calculateJointProbabilityFromVarOutcomeList(List<VariableOutcome> variableList, Counter counter) {
+        // calculate the joint probability - each variable is independent of the net given the parents
+        double res = variableList.get(0).getProbability(variableList); // get the probability of the first variable
+        for (int i = 1; i < variableList.size(); i++) {
+            res *= variableList.get(i).getProbability(variableList);
+        }
+
+        // we make `variableList.size() - 1` multiplications
+        counter.incrementProductCounter(variableList.size() - 1);
+
+        return res;
+    }
+
+
+    private double calculateProbForComplexQuery(QueryParts qp, QueryPlan plan, Counter counter, FactorMemo memo, boolean logSpace, boolean sparse,
+                                                QueryMetrics metrics) {
+        counter.incrementPrunedFactorCounter(plan.prunedFactors);
+        if (plan.directLookup) {
+            // get the probability of the query variable given the evidence
+            return qp.queryOutcomes.get(0).getProbability(qp.evidenceOutcomes);
+        }
+        if (plan.method == '1') {
+            return new Enumeration(plan.queryVars, plan.hiddenVars, qp.queryOutcomes, qp.evidenceOutcomes, logSpace).probability(counter);
+        }
+        if (plan.method == '4') {
+            return getJunctionTree().probability(qp.queryOutcomes, qp.evidenceOutcomes, counter);
+        }
+        double probability = memo != null
+                ? calculateProbByVariableElimination(qp, plan, counter, memo, logSpace, sparse)
+                : calculateProbByVariableElimination(qp, plan, counter, logSpace, sparse, metrics);
+        if (metrics != null) {
+            metrics.recordElimination(counter, plan.steps.size());
+        }
+        return probability;
+    }
+
+    /**
+     * @return the plan of the query, from the cache if a query of the same shape was planned before
+     */
+    private QueryPlan getPlan(QueryParts qp, char method) {
+        // the plan only depends on the shape of the query, so queries that only differ in the outcomes share it
+        String shape = qp.getShape(method);
+        long generation = planCache.getGeneration(); // before the settings the plan depends on are read
+        QueryPlan plan = planCache.get(shape);
+        if (plan == null) {
+            plan = createPlan(qp, method);
+            planCache.put(shape, plan, generation);
+        }
+        return plan;
+    }
+
+    /**
+     * Plans how to answer a query of the given shape.
+     *
+     * @param qp     the parsed query (only the variables are used, not the outcomes)
+     * @param method the method
+     * @return the plan
+     */
+    private QueryPlan createPlan(QueryParts qp, char method) {
+        // check if we can get the probability only using the CPT of the query variable
+        if (qp.queryOutcomes.size() == 1) {
+            // check if all the evidence variables are parents of the query variable
+            Variable queryVar = qp.queryOutcomes.get(0).variable;
+            boolean allEvidenceAreParents = true;
+            for (VariableOutcome evidence : qp.evidenceOutcomes) {
+                if (!queryVar.getParents().contains(evidence.variable)) {
+                    allEvidenceAreParents = false;
+                    break;
+                }
+            }
+            if (allEvidenceAreParents) {
+                return QueryPlan.directLookup(method);
+            }
+        }
+
+        // the query variables, and the hidden variables (neither query nor evidence)
+        Set<Variable> queryVar = new HashSet<>();
+        Set<Variable> hiddenVar = new HashSet<>(new HashSet<>(this.variables.values()));
+        for (VariableOutcome vo : qp.queryOutcomes) {
+            queryVar.add(vo.variable);
+            hiddenVar.remove(vo.variable);
+        }
+        for (VariableOutcome vo : qp.evidenceOutcomes) {
+            hiddenVar.remove(vo.variable);
+        }
+
+        switch (method) {
+            case '1':
+                return QueryPlan.enumeration(method, new ArrayList<>(queryVar), new ArrayList<>(hiddenVar));
+            case '2':
+                return planMethod2(qp, hiddenVar);
+            case '3':
+                return planMethod3(qp, hiddenVar);
+            case '4':
+                // the junction tree answers queries whose variables are in one clique, otherwise use method 3
+                if (junctionTreeFits() && getJunctionTree().covers(queryVar)) {
+                    return QueryPlan.junctionTree(method);
+                }
+                return planMethod3(qp, hiddenVar);
+            default:
+                throw new IllegalArgumentException("Invalid method: " + method);
+        }
+    }
+
+    /**
+     * @return whether the largest clique of the junction tree fits in the memory budget
+     */
+    private boolean junctionTreeFits() {
+        MemoryBudget budget = memoryBudget;
+        return budget == null || budget.fits(getJunctionTreeSize());
+    }
+
+    private QueryPlan planMethod2(QueryParts qp, Set<Variable> hiddenVar) {
+        QueryMetrics metrics = queryMetrics;
+        long time = metrics == null ? 0 : System.nanoTime();
+        // sort the `hiddenVars` by the variable name
+        List<Variable> sortedHiddenVars = hiddenVar.stream()
+                .sorted(Comparator.comparing(Variable::getName))
+                .collect(Collectors.toList());
+
+        // eliminate the relevant hidden variables by name
+        BitSet relevantVars = relevantVariables(qp);
+        List<Variable> relevantHiddenVars = filterRelevantHiddenVars(sortedHiddenVars, relevantVars);
+        if (metrics != null) {
+            metrics.record(QueryMetrics.Phase.RELEVANCE, time);
+        }
+        List<Factor> factors = collectInitialFactors(relevantHiddenVars, qp.queryOutcomes, qp.evidenceOutcomes, relevantVars);
+        return planElimination(qp, '2', factors, relevantHiddenVars);
+    }
+
+    private QueryPlan planMethod3(QueryParts qp, Set<Variable> hiddenVar) {
+        QueryMetrics metrics = queryMetrics;
+        long time = metrics == null ? 0 : System.nanoTime();
+        BitSet relevantVars = relevantVariables(qp);
+        List<Variable> relevantHiddenVars = filterRelevantHiddenVars(new ArrayList<>(hiddenVar), relevantVars);
+        if (metrics != null) {
+            time = metrics.record(QueryMetrics.Phase.RELEVANCE, time);
+        }
+        List<Factor> factors = collectInitialFactors(relevantHiddenVars, qp.queryOutcomes, qp.evidenceOutcomes, relevantVars);
+
+        // get the order of the hidden variables from the factors after setting the evidence
+        List<Factor> factorsWithEvidence = new ArrayList<>();
+        for (Factor factor : factors) {
+            Factor updatedFactor = factor.setEvidences(qp.evidenceOutcomes);
+            if (updatedFactor.getSize() > 1) {
+                factorsWithEvidence.add(updatedFactor);
+            }
+        }
+        InteractionGraph ig = new InteractionGraph(factorsWithEvidence);
+        OrderingSearch search = orderingSearch;
+        List<Variable> orderedHiddenVars = search == null
+                ? ig.minFillOrder(new HashSet<>(relevantHiddenVars))
+                : search.order(ig, new HashSet<>(relevantHiddenVars));
+        if (metrics != null) {
+            metrics.record(QueryMetrics.Phase.ORDER, time);
+        }
+
+        return planElimination(qp, '3', factors, orderedHiddenVars);
+    }
+
+    /**
+     * Plans the variable elimination of the given factors. If its largest factor does not fit in the memory budget, the
+     * plans of the other elimination orders are tried, and the one with the smallest largest factor is kept if it fits.
+     *
+     * @param qp               the parsed query
+     * @param method           the method
+     * @param factors          the initial factors (the CPTs, before setting the evidence)
+     * @param eliminationOrder the order in which to eliminate the hidden variables
+     * @return the plan, or a sampling plan if no order fits and the budget falls back to sampling
+     * @throws MemoryBudgetExceededException if no order fits and the budget fails the query
+     */
+    private QueryPlan planElimination(QueryParts qp, char method, List<Factor> factors, List<Variable> eliminationOrder) {
+        List<Factor> factorsWithEvidence = new ArrayList<>();
+        List<Variable> factorSources = new ArrayList<>();
+        List<List<Variable>> scopes = new ArrayList<>();
+        for (Factor factor : factors) {
+            Factor updatedFactor = factor.setEvidences(qp.evidenceOutcomes);
+            if (updatedFactor.getSize() > 1) { // only keep factors with more than one row
+                List<Variable> factorVariables = factor.getVariables();
+                factorSources.add(factorVariables.get(factorVariables.size() - 1)); // a CPT ends with its own variable
+                scopes.add(updatedFactor.getVariables());
+                factorsWithEvidence.add(updatedFactor);
+            }
+        }
+        int prunedFactors = variables.size() - factors.size();
+        QueryPlan plan = QueryPlan.elimination(method, factorSources, scopes, eliminationOrder, prunedFactors);
+        MemoryBudget budget = memoryBudget;
+        if (budget == null || budget.fits(plan.peakFactorSize)) {
+            return plan;
+        }
+
+        // plan the other orders, before allocating any larger table
+        InteractionGraph ig = new InteractionGraph(factorsWithEvidence);
+        Set<Variable> hiddenVars = new HashSet<>(eliminationOrder);
+        List<List<Variable>> orders = new ArrayList<>();
+        for (InteractionGraph.Heuristic heuristic : InteractionGraph.Heuristic.values()) {
+            orders.add(ig.eliminationOrder(heuristic, hiddenVars));
+        }
+        OrderingSearch search = orderingSearch;
+        if (search != null) {
+            orders.add(search.order(ig, hiddenVars));
+        }
+        for (List<Variable> order : orders) {
+            QueryPlan candidate = QueryPlan.elimination(method, factorSources, scopes, order, prunedFactors);
+            if (candidate.peakFactorSize < plan.peakFactorSize) {
+                plan = candidate;
+            }
+        }
+        if (budget.fits(plan.peakFactorSize)) {
+            return plan;
+        }
+        if (budget.getFallback() == MemoryBudget.Fallback.SAMPLING) {
+            return QueryPlan.sampling(method, plan.peakFactorSize);
+        }
+        throw new MemoryBudgetExceededException(qp.getShape(method), plan.peakFactorSize, budget.getMaxFactorSize());
+    }
+
+    /**
+     * Answers a query with methods 2 and 3, by running the elimination plan.
+     *
+     * @param qp      the parsed query
+     * @param plan    the elimination plan
+     * @param counter  the counter of the query
+     * @param logSpace whether to eliminate in log space
+     * @param sparse   whether the factors may be sparse
+     * @param metrics  the metrics to record the phases into, or null
+     * @return the probability of the query
+     */
+    private double calculateProbByVariableElimination(QueryParts qp, QueryPlan plan, Counter counter, boolean logSpace, boolean sparse,
+                                                      QueryMetrics metrics) {
+        long time = metrics == null ? 0 : System.nanoTime();
+        Factor[] slots = new Factor[plan.slotCount];
+        setEvidenceOnFactors(plan, slots, qp.evidenceOutcomes, counter, logSpace, sparse);
+        if (metrics != null) {
+            time = metrics.record(QueryMetrics.Phase.SET_EVIDENCE, time);
+        }
+
+        eliminateHiddenVariables(plan, slots, counter);
+        if (metrics != null) {
+            time = metrics.record(QueryMetrics.Phase.ELIMINATE, time);
+        }
+
+        Factor finalFactor = joinSlots(slots, plan.finalJoinOrder, counter);
+        finalFactor = finalFactor.normalize(counter);
+        if (metrics != null) {
+            metrics.record(QueryMetrics.Phase.FINAL_JOIN, time);
+        }
+        return finalFactor.getProbability(qp.queryOutcomes);
+    }
+
+    /**
+     * Answers a query with methods 2 and 3 like {@link #calculateProbByVariableElimination(QueryParts, QueryPlan, Counter, boolean, boolean, QueryMetrics)},
+     * but takes the factors that were already computed from the same inputs from the memo. Only the operations that
+     * are actually run are counted.
+     *
+     * @param qp      the parsed query
+     * @param plan    the elimination plan
+     * @param counter the counter of the query
+     * @param memo     the memo of the intermediate factors
+     * @param logSpace whether to eliminate in log space
+     * @param sparse   whether the factors may be sparse
+     * @return the probability of the query
+     */
+    private static double calculateProbByVariableElimination(QueryParts qp, QueryPlan plan, Counter counter, FactorMemo memo, boolean logSpace,
+                                                             boolean sparse) {
+        return eliminate(qp, plan, counter, memo, logSpace, sparse).getProbability(qp.queryOutcomes);
+    }
+
+    /**
+     * Runs the elimination plan of a query with the memo.
+     *
+     * @return the normalized factor over the query variables
+     */
+    private static Factor eliminate(QueryParts qp, QueryPlan plan, Counter counter, FactorMemo memo, boolean logSpace, boolean sparse) {
+        FactorMemo.Entry[] slots = new FactorMemo.Entry[plan.slotCount];
+        for (int i = 0; i < plan.factorSources.size(); i++) {
+            slots[i] = memo.setEvidence(plan.factorSources.get(i), qp.evidenceOutcomes, logSpace, sparse);
+            counter.recordFactorSize(slots[i].factor.getSize());
+        }
+        for (QueryPlan.Step step : plan.steps) {
+            FactorMemo.Entry eliminated = memo.eliminate(step.variable, slots, step.joinOrder, counter);
+            if (step.resultSlot != -1) {
+                slots[step.resultSlot] = eliminated;
+            }
+        }
+
+        Factor finalFactor = slots[plan.finalJoinOrder[0]].factor;
+        for (int i = 1; i < plan.finalJoinOrder.length; i++) {
+            finalFactor = Factor.join(finalFactor, slots[plan.finalJoinOrder[i]].factor, counter);
+        }
+        return finalFactor.normalize(counter);
+    }
+
+    /**
+     * Answers several queries, sharing the work of the queries of methods 2 and 3 that have the same evidence (the same
+     * outcomes, in any order). The queries of such a group share one {@link FactorMemo} of {@value #BATCH_MEMO_CAPACITY}
+     * factors, so a factor that several of their plans compute from the same inputs is usually computed once, and the queries over the same variables read their
+     * outcomes from one normalized factor. The other queries are answered one by one.
+     * <p>
+     * The sum and product counts of each query are the ones of answering it alone, as predicted by its plan, so they do
+     * not depend on the other queries of the batch. With sparse factors (see {@link #setSparseFactors(boolean)}) the counts
+     * depend on the values of the factors, not only on the plan, so the queries are answered one by one.
+     *
+     * @param queries the queries, in the format of {@link #answerQuery(String)}
+     * @return the results, in the order of the queries
+     */
+    public List<QueryResult> answerQueries(List<String> queries) {
+        QueryResult[] results = new QueryResult[queries.size()];
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        boolean sparse = sparseFactors;
+        for (int i = 0; i < queries.size(); i++) {
+            String group = sparse ? null : evidenceGroup(queries.get(i));
+            if (group == null) {
+                results[i] = answerQuery(queries.get(i));
+            } else {
+                groups.computeIfAbsent(group, g -> new ArrayList<>()).add(i);
+            }
+        }
+
+        QueryMetrics metrics = queryMetrics;
+        for (List<Integer> group : groups.values()) {
+            FactorMemo memo = new FactorMemo(BATCH_MEMO_CAPACITY); // dropped with the group
+            Map<String, Factor> finalFactors = new HashMap<>(); // by query shape
+            for (int i : group) {
+                long start = metrics == null ? 0 : System.nanoTime();
+                String query = queries.get(i);
+                char method = query.charAt(query.length() - 1);
+                QueryParts qp = parseQueryAndEvidence(query, metrics);
+                QueryPlan plan = getPlan(qp, method);
+                if (plan.directLookup || plan.sampling) {
+                    results[i] = answerQuery(query);
+                    continue;
+                }
+                Factor finalFactor = finalFactors.computeIfAbsent(qp.getShape(method), shape -> eliminate(qp, plan, new Counter(), memo, logSpace, false));
+
+                Counter counter = new Counter();
+                counter.incrementSumCounter(plan.sumCount);
+                counter.incrementProductCounter(plan.productCount);
+                counter.incrementPrunedFactorCounter(plan.prunedFactors);
+                counter.recordFactorSize(plan.peakFactorSize);
+                results[i] = new QueryResult(finalFactor.getProbability(qp.queryOutcomes), counter);
+                if (metrics != null) {
+                    // the first query of a shape includes the shared elimination
+                    metrics.record(QueryMetrics.Phase.QUERY, start);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Groups the queries whose work {@link #answerQueries(List)} shares.
+     *
+     * @param query the query
+     * @return the evidence of a query of method 2 or 3 sorted by variable, e.g. "J=T,M=T", or null for any other query
+     */
+    static String evidenceGroup(String query) {
+        if (query.endsWith(")")) {
+            return null;
+        }
+        char method = query.charAt(query.length() - 1);
+        if (method != '2' && method != '3') {
+            return null;
+        }
+        int separator = query.indexOf('|');
+        if (separator == -1) {
+            return "";
+        }
+        String[] evidence = query.substring(separator + 1, query.length() - 3).replace(" ", "").split(",");
+        Arrays.sort(evidence);
+        return String.join(",", evidence);
+    }
+
+    /**
+     * The query variables and the method of a query of an evidence group (see {@link #evidenceGroup(String)}): the queries
+     * of a group with the same shape read their answers from one factor.
+     *
+     * @param query the query, e.g. "P(B=T|J=T,M=T),2"
+     * @return the query variables and the method, e.g. "B|2"
+     */
+    static String queryGroup(String query) {
+        int separator = query.indexOf('|');
+        int end = separator == -1 ? query.length() - 3 : separator;
+        if (end < 2) {
+            return query; // answerQuery reports the error
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String outcome : query.substring(2, end).replace(" ", "").split(",")) {
+            int equals = outcome.indexOf('=');
+            sb.append(equals == -1 ? outcome : outcome.substring(0, equals)).append(',');
+        }
+        return sb.append('|').append(query.charAt(query.length() - 1)).toString();
+    }
+
+    /**
+     * Returns the variables whose CPTs are needed to answer the query.
+     * <p>
+     * By default these are the query and evidence variables and their ancestors: the CPT of any other variable sums to one
+     * once that variable is eliminated (a barren node). With d-separation pruning (see {@link #setDSeparationPruning(boolean)})
+     * these are the requisite variables of the Bayes-ball algorithm, which also drops the ancestors that the evidence
+     * d-separates from the query. Both are sets of variable ids: the first is the union of the precomputed ancestor sets,
+     * the second is computed in time linear in the size of the network.
+     *
+     * @param qp the parsed query (only the variables are used, not the outcomes)
+     * @return the ids of the variables whose CPTs are needed
+     */
+    private BitSet relevantVariables(QueryParts qp) {
+        return dSeparationPruning ? requisiteVariables(qp) : ancestralVariables(qp);
+    }
+
+    /**
+     * @return the ids of the query and evidence variables, and all their ancestors
+     */
+    private BitSet ancestralVariables(QueryParts qp) {
+        indexVariables();
+        BitSet ancestors = new BitSet(variables.size());
+        for (VariableOutcome vo : qp.queryOutcomes) {
+            ancestors.or(vo.variable.getAncestors());
+        }
+        for (VariableOutcome vo : qp.evidenceOutcomes) {
+            ancestors.or(vo.variable.getAncestors());
+        }
+        return ancestors;
+    }
+
+    /**
+     * Runs the Bayes-ball algorithm (Shachter, 1998) from the query variables. A ball passes from a child to an unobserved
+     * variable's parents and children, from a parent to an unobserved variable's children, and from a parent back to an
+     * observed variable's parents. The variables whose parents the ball visits are the requisite ones: their CPTs are
+     * exactly the CPTs that can change the answer.
+     *
+     * @return the ids of the requisite variables of the query
+     */
+    private BitSet requisiteVariables(QueryParts qp) {
+        Map<Variable, List<Variable>> children = indexVariables();
+        Set<Variable> evidence = new HashSet<>();
+        for (VariableOutcome vo : qp.evidenceOutcomes) {
+            evidence.add(vo.variable);
+        }
+
+        BitSet markedTop = new BitSet(variables.size()); // the ball was passed to the parents, the CPT is requisite
+        BitSet markedBottom = new BitSet(variables.size()); // the ball was passed to the children
+        Deque<Variable> fromChild = new ArrayDeque<>();
+        Deque<Variable> fromParent = new ArrayDeque<>();
+        for (VariableOutcome vo : qp.queryOutcomes) {
+            fromChild.add(vo.variable);
+        }
+        while (!fromChild.isEmpty() || !fromParent.isEmpty()) {
+            if (!fromChild.isEmpty()) {
+                Variable variable = fromChild.poll();
+                if (!evidence.contains(variable)) {
+                    if (mark(markedTop, variable)) {
+                        fromChild.addAll(variable.getParents());
+                    }
+                    if (mark(markedBottom, variable)) {
+                        fromParent.addAll(children.get(variable));
+                    }
+                }
+            } else {
+                Variable variable = fromParent.poll();
+                if (evidence.contains(variable)) {
+                    if (mark(markedTop, variable)) {
+                        fromChild.addAll(variable.getParents());
+                    }
+                } else if (mark(markedBottom, variable)) {
+                    fromParent.addAll(children.get(variable));
+                }
+            }
+        }
+        return markedTop;
+    }
+
+    /**
+     * Sets the bit of the variable.
+     *
+     * @return true if the bit was not set before
+     */
+    private static boolean mark(BitSet marked, Variable variable) {
+        if (marked.get(variable.getId())) {
+            return false;
+        }
+        marked.set(variable.getId());
+        return true;
+    }
+
+    /**
+     * Helper method to filter the relevant hidden variables.
+     *
+     * @param orderedHiddenVars the ordered list of hidden variables
+     * @param relevantVars      the ids of the variables whose CPTs are needed (see {@link #relevantVariables(QueryParts)})
+     * @return a list of relevant hidden variables (the order is preserved)
+     */
+    private List<Variable> filterRelevantHiddenVars(List<Variable> orderedHiddenVars, BitSet relevantVars) {
+        List<Variable> filtered = new ArrayList<>();
+        for (Variable hiddenVar : orderedHiddenVars) {
+            if (relevantVars.get(hiddenVar.getId())) {
+                filtered.add(hiddenVar);
+            }
+        }
+        return filtered;
+    }
+
+
+    /**
+     * Helper method to collect the factors for given variables.
+     *
+     * @param relevantHiddenVars the list of relevant hidden variables
+     * @param queryOutcomes      the query variable outcomes
+     * @param evidenceOutcomes   the evidence variable outcomes
+     * @param relevantVars       the ids of the variables whose CPTs are needed, the CPTs of the other evidence variables are skipped
+     * @return a list of factors for the relevant hidden variables, query outcomes, and evidence outcomes
+     */
+    private List<Factor> collectInitialFactors(List<Variable> relevantHiddenVars, List<VariableOutcome> queryOutcomes, List<VariableOutcome> evidenceOutcomes, BitSet relevantVars) {
+        List<Factor> factors = new ArrayList<>();
+        for (Variable v : relevantHiddenVars) {
+            factors.add(v.getFactor());
+        }
+        for (VariableOutcome vo : evidenceOutcomes) {
+            if (relevantVars.get(vo.variable.getId())) {
+                factors.add(vo.variable.getFactor());
+            }
+        }
+        for (VariableOutcome vo : queryOutcomes) {
+            factors.add(vo.variable.getFactor());
+        }
+        return factors;
+    }
+
+    /**
+     * Helper method to set evidence on the factors of the plan.
+     *
+     * @param plan             the elimination plan
+     * @param slots            the factor slots of the plan, the first ones are filled with the initial factors
+     * @param evidenceOutcomes the evidence outcomes
+     * @param counter          the counter of the query, records the sizes of the initial factors
+     * @param logSpace         whether to take the CPTs in log space
+     * @param sparse           whether the factors may be sparse
+     */
+    private void setEvidenceOnFactors(QueryPlan plan, Factor[] slots, List<VariableOutcome> evidenceOutcomes, Counter counter, boolean logSpace,
+                                      boolean sparse) {
+        for (int i = 0; i < plan.factorSources.size(); i++) {
+            Factor cpt = plan.factorSources.get(i).getFactor();
+            slots[i] = cpt.forQuery(logSpace, sparse).setEvidences(evidenceOutcomes);
+            counter.recordFactorSize(slots[i].getSize());
+        }
+    }
+
+
+    /**
+     * Eliminates the hidden variables, following the steps of the plan.
+     *
+     * @param plan    the elimination plan
+     * @param slots   the factor slots of the plan
+     * @param counter the counter of the query
+     */
+    private void eliminateHiddenVariables(QueryPlan plan, Factor[] slots, Counter counter) {
+        for (QueryPlan.Step step : plan.steps) {
+            Factor joinedFactor = joinSlots(slots, step.joinOrder, counter);
+            Factor joinedFactorEliminated = joinedFactor.eliminate(step.variable, counter);
+            if (step.resultSlot != -1) {
+                slots[step.resultSlot] = joinedFactorEliminated;
+            }
+        }
+    }
+
+    /**
+     * Joins the factors in the given slots, in the given order.
+     */
+    private static Factor joinSlots(Factor[] slots, int[] joinOrder, Counter counter) {
+        Factor result = slots[joinOrder[0]];
+        for (int i = 1; i < joinOrder.length; i++) {
+            result = Factor.join(result, slots[joinOrder[i]], counter);
+        }
+        return result;
+    }
+
+    /**
+     * Helper class to hold parsed query and evidence parts.
+     */
+    private static class QueryParts {
+        List<VariableOutcome> queryOutcomes;
+        List<VariableOutcome> evidenceOutcomes;
+
+        QueryParts(List<VariableOutcome> q, List<VariableOutcome> e) {
+            this.queryOutcomes = q;
+            this.evidenceOutcomes = e;
+        }
+
+        /**
+         * The shape of the query: the query variables, the evidence variables and the method, e.g. "B|J,M|3".
+         * Queries with the same shape have the same plan.
+         */
+        String getShape(char method) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < queryOutcomes.size(); i++) {
+                sb.append(i == 0 ? "" : ",").append(queryOutcomes.get(i).variable.getName());
+            }
+            sb.append('|');
+            for (int i = 0; i < evidenceOutcomes.size(); i++) {
+                sb.append(i == 0 ? "" : ",").append(evidenceOutcomes.get(i).variable.getName());
+            }
+            return sb.append('|').append(method).toString();
+        }
+    }
+
+    /**
+     * Parses the variable outcomes from the string array.
+     *
+     * @param variableOutcomesAsString the string array containing the variable outcomes. for example: ["X=T", "Y=F"]
+     * @return a list of VariableOutcome objects
+     */
+    private List<VariableOutcome> parseVariableOutcomes(String[] variableOutcomesAsString) {
+        List<VariableOutcome> variableOutcomes = new ArrayList<>();
+        for (String variable : variableOutcomesAsString) {
+            // split the variable by the `=`
+            String[] parts1 = variable.split("=");
+            String name = parts1[0].trim();
+            String outcome = parts1[1].trim();
+            Variable var = this.variables.get(name);
+            assert var != null : "Variable not found: " + name;
+            variableOutcomes.add(new VariableOutcome(var, outcome));
+        }
+        return variableOutcomes;
+    }
+
+    /**
+     * Parses the query and evidence from the given string.
+     * The query is expected to be in the format "P(X=F,Y=T|Z=T,W=F),n". Where n in 1,2,3 (the method), and the outcomes need to be part of the variable possible outcomes.
+     *
+     * @param query the query string
+     * @return a QueryParts object containing the query and evidence outcomes
+     */
+    private QueryParts parseQueryAndEvidence(String query, QueryMetrics metrics) {
+        if (metrics == null) {
+            return parseQueryAndEvidence(query);
+        }
+        long start = System.nanoTime();
+        QueryParts qp = parseQueryAndEvidence(query);
+        metrics.record(QueryMetrics.Phase.PARSE, start);
+        return qp;
+    }
+
+    private QueryParts parseQueryAndEvidence(String query) {
+        String stripped = query.substring(2, query.length() - 3);
+        String[] parts = stripped.split("\\|");
+        String queryPart = parts[0].trim();
+        List<VariableOutcome> evidenceOutcomes;
+        List<VariableOutcome> queryOutcomes = parseVariableOutcomes(queryPart.split(","));
+        if (parts.length == 1) {
+            evidenceOutcomes = new ArrayList<>();
+        } else {
+            String evidencePart = parts[1].trim();
+            evidenceOutcomes = parseVariableOutcomes(evidencePart.split(","));
+        }
+
+        return new QueryParts(queryOutcomes, evidenceOutcomes);
+    }
+}
@@ -0,0 +1,174 @@
+package bayesnet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a Bayesian network from a BIFXML file.
+ * <p>
+ * The file is read in one pass with a streaming (StAX) reader, so the document is never held in memory: each
+ * {@code VARIABLE} is added when it ends, and each {@code DEFINITION} is added when it ends (or at the end of the file, if
+ * it refers to a variable that was not declared yet). The numbers of a {@code TABLE} are parsed straight from the
+ * characters of the reader, see {@link TableParser}.
+ */
+public class BifXmlLoader {
+
+    private BifXmlLoader() {
+    }
+
+    public static BayesNet load(String fileName) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads a network from a stream. The stream is not closed.
+     *
+     * @param in the BIFXML document
+     * @return the network
+     */
+    public static BayesNet load(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+        BayesNet bayesNet = new BayesNet();
+        List<Definition> deferred = new ArrayList<>();
+
+        String section = null; // VARIABLE or DEFINITION
+        String field = null; // the element whose text is being read, inside the section
+        StringBuilder text = new StringBuilder();
+        TableParser table = null;
+
+        String variableName = null;
+        List<String> outcomes = null;
+        Definition definition = null;
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String startName = reader.getLocalName();
+                        if (startName.equals("VARIABLE")) {
+                            section = startName;
+                            variableName = null;
+                            outcomes = new ArrayList<>();
+                        } else if (startName.equals("DEFINITION")) {
+                            section = startName;
+                            definition = new Definition();
+                        } else if (isField(section, startName)) {
+                            field = startName;
+                            text.setLength(0);
+                            if (field.equals("TABLE")) {
+                                table = new TableParser();
+                            }
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (table != null) {
+                            table.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        } else if (field != null) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        String endName = reader.getLocalName();
+                        if (endName.equals(field)) {
+                            // like the first NAME, FOR and TABLE of the element, and all its OUTCOME and GIVEN elements
+                            switch (field) {
+                                case "NAME":
+                                    if (variableName == null) {
+                                        variableName = text.toString();
+                                    }
+                                    break;
+                                case "OUTCOME":
+                                    outcomes.add(text.toString());
+                                    break;
+                                case "FOR":
+                                    if (definition.forVariableName == null) {
+                                        definition.forVariableName = text.toString();
+                                    }
+                                    break;
+                                case "GIVEN":
+                                    definition.parents.add(text.toString());
+                                    break;
+                                case "TABLE":
+                                    if (definition.probabilities == null) {
+                                        definition.probabilities = table.finish();
+                                    }
+                                    table = null;
+                                    break;
+                            }
+                            field = null;
+                        } else if (endName.equals("VARIABLE") && "VARIABLE".equals(section)) {
+                            bayesNet.addVariable(variableName, outcomes);
+                            section = null;
+                        } else if (endName.equals("DEFINITION") && "DEFINITION".equals(section)) {
+                            if (isDeclared(bayesNet, definition)) {
+                                addDefinition(bayesNet, definition);
+                            } else {
+                                deferred.add(definition);
+                            }
+                            section = null;
+                        }
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (Definition d : deferred) {
+            addDefinition(bayesNet, d);
+        }
+        return bayesNet;
+    }
+
+    private static boolean isField(String section, String elementName) {
+        if ("VARIABLE".equals(section)) {
+            return elementName.equals("NAME") || elementName.equals("OUTCOME");
+        }
+        if ("DEFINITION".equals(section)) {
+            return elementName.equals("FOR") || elementName.equals("GIVEN") || elementName.equals("TABLE");
+        }
+        return false;
+    }
+
+    private static boolean isDeclared(BayesNet bayesNet, Definition definition) {
+        if (!bayesNet.variables.containsKey(definition.forVariableName)) {
+            return false;
+        }
+        for (String parentName : definition.parents) {
+            if (!bayesNet.variables.containsKey(parentName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addDefinition(BayesNet bayesNet, Definition definition) {
+        bayesNet.addDependency(definition.forVariableName, definition.parents, definition.probabilities);
+    }
+
+    /**
+     * The content of a DEFINITION element.
+     */
+    private static class Definition {
+        String forVariableName;
+        List<String> parents = new ArrayList<>();
+        double[] probabilities;
+    }
+}
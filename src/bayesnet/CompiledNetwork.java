@@ -0,0 +1,138 @@
+package bayesnet;
+
+import java.util.*;
+
+/**
+ * A network compiled to arrays for the samplers. The variables are numbered in a topological order (parents before
+ * children), and their parents, children and CPTs are indexed by these numbers, so drawing a sample is plain array
+ * arithmetic, without any {@link VariableOutcome} or map lookup.
+ * <p>
+ * The CPT of a variable is the table of its {@link Variable#getFactor() factor}: its parents in order, then the variable
+ * itself, which changes fastest. So the distribution of a variable given its parents is the row of
+ * {@link #cardinalities cardinality} entries starting at {@link #rowOffset(int, int[])}.
+ * <p>
+ * The Markov blanket of a variable (its parents, its children and their other parents) is what its children and their
+ * rows depend on: with {@link #childStrides}, the entry of a child's CPT for every outcome of the variable is an offset
+ * away from the current one.
+ */
+class CompiledNetwork {
+    final Variable[] variables; // in topological order
+    final int[] cardinalities;
+    final int[][] parents;
+    final int[][] parentStrides; // the stride of each parent in the CPT
+    final int[][] children;
+    final int[][] childStrides; // the stride of the variable in the CPT of each child
+    final double[][] cpts;
+    private final Map<Variable, Integer> indices;
+
+    /**
+     * @param networkVariables the variables of the network, with their CPTs
+     */
+    CompiledNetwork(Collection<Variable> networkVariables) {
+        int n = networkVariables.size();
+        this.variables = topologicalOrder(networkVariables);
+        this.indices = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            indices.put(variables[i], i);
+        }
+
+        this.cardinalities = new int[n];
+        this.parents = new int[n][];
+        this.parentStrides = new int[n][];
+        this.cpts = new double[n][];
+        List<List<Integer>> childLists = new ArrayList<>();
+        List<List<Integer>> childStrideLists = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            childLists.add(new ArrayList<>());
+            childStrideLists.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            Variable variable = variables[i];
+            List<Variable> variableParents = variable.getParents();
+            cardinalities[i] = variable.getOutcomes().size();
+            parents[i] = new int[variableParents.size()];
+            parentStrides[i] = new int[variableParents.size()];
+            int stride = cardinalities[i];
+            for (int j = variableParents.size() - 1; j >= 0; j--) {
+                parents[i][j] = indices.get(variableParents.get(j));
+                parentStrides[i][j] = stride;
+                stride *= variableParents.get(j).getOutcomes().size();
+                childLists.get(parents[i][j]).add(i);
+                childStrideLists.get(parents[i][j]).add(parentStrides[i][j]);
+            }
+            cpts[i] = variable.getFactor().getValues();
+        }
+        this.children = new int[n][];
+        this.childStrides = new int[n][];
+        for (int i = 0; i < n; i++) {
+            children[i] = childLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            childStrides[i] = childStrideLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Orders the variables so that every variable comes after its parents (Kahn's algorithm, in the given order when
+     * there is a choice).
+     */
+    private static Variable[] topologicalOrder(Collection<Variable> networkVariables) {
+        Map<Variable, Integer> missingParents = new HashMap<>();
+        Map<Variable, List<Variable>> childLists = new HashMap<>();
+        Deque<Variable> ready = new ArrayDeque<>();
+        for (Variable variable : networkVariables) {
+            missingParents.put(variable, variable.getParents().size());
+            childLists.putIfAbsent(variable, new ArrayList<>());
+            for (Variable parent : variable.getParents()) {
+                childLists.computeIfAbsent(parent, p -> new ArrayList<>()).add(variable);
+            }
+            if (variable.getParents().isEmpty()) {
+                ready.add(variable);
+            }
+        }
+
+        Variable[] order = new Variable[networkVariables.size()];
+        int size = 0;
+        while (!ready.isEmpty()) {
+            Variable variable = ready.poll();
+            order[size++] = variable;
+            for (Variable child : childLists.get(variable)) {
+                if (missingParents.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (size != order.length) {
+            throw new IllegalStateException("The network has a cycle");
+        }
+        return order;
+    }
+
+    /**
+     * @return the number of the variable
+     */
+    int indexOf(Variable variable) {
+        Integer index = indices.get(variable);
+        if (index == null) {
+            throw new IllegalArgumentException("Variable not in the network: " + variable.getName());
+        }
+        return index;
+    }
+
+    /**
+     * @param variable   the number of the variable
+     * @param assignment the outcome index of every variable (only the parents are read)
+     * @return where the distribution of the variable given the outcomes of its parents starts in its CPT
+     */
+    int rowOffset(int variable, int[] assignment) {
+        int[] variableParents = parents[variable];
+        int[] strides = parentStrides[variable];
+        int offset = 0;
+        for (int j = 0; j < variableParents.length; j++) {
+            offset += assignment[variableParents[j]] * strides[j];
+        }
+        return offset;
+    }
+
+    int size() {
+        return variables.length;
+    }
+}
@@ -0,0 +1,124 @@
+package bayesnet;
+
+/**
+ * Helper class to count the number of times a sum or product is calculated, and the number of CPTs that were pruned
+ * before the variable elimination. It also keeps the number of rows of the largest factor of the query, and of all its
+ * factors together. The sums and products of a junction tree calibration (method 4) are kept apart from those of the
+ * query itself, since one calibration is shared by every query with the same evidence.
+ * <p>
+ * Each query gets its own counter, which is passed along to the factor operations, so concurrent queries on the same
+ * {@link BayesNet} do not share counts. A counter is not thread-safe: it must only be used by the thread running its query.
+ */
+public class Counter {
+    private long sumCounter;
+    private long productCounter;
+    private long prunedFactorCounter;
+    private long peakFactorSize;
+    private long totalFactorSize;
+    private long calibrationSumCounter;
+    private long calibrationProductCounter;
+
+    public Counter() {
+        this.sumCounter = 0;
+        this.productCounter = 0;
+        this.prunedFactorCounter = 0;
+    }
+
+    public void incrementSumCounter(long value) {
+        sumCounter += value;
+    }
+
+    public void incrementSumCounter() {
+        sumCounter++;
+    }
+
+    public void incrementProductCounter() {
+        productCounter++;
+    }
+
+    public long getSumCounter() {
+        return sumCounter;
+    }
+
+    public long getProductCounter() {
+        return productCounter;
+    }
+
+    public void incrementProductCounter(long value) {
+        productCounter += value;
+    }
+
+    public void incrementPrunedFactorCounter(long value) {
+        prunedFactorCounter += value;
+    }
+
+    public long getPrunedFactorCounter() {
+        return prunedFactorCounter;
+    }
+
+    /**
+     * Records a factor of the query, keeps the largest size and adds up the sizes.
+     *
+     * @param rows the number of rows of the factor
+     */
+    public void recordFactorSize(long rows) {
+        peakFactorSize = Math.max(peakFactorSize, rows);
+        totalFactorSize += rows;
+    }
+
+    public long getPeakFactorSize() {
+        return peakFactorSize;
+    }
+
+    public long getTotalFactorSize() {
+        return totalFactorSize;
+    }
+
+    /**
+     * Records the junction tree calibration that the query was answered from: its sums and products go to the
+     * calibration counts, and its factors to the factor sizes.
+     *
+     * @param calibration the counter of the calibration
+     */
+    public void addCalibration(Counter calibration) {
+        calibrationSumCounter += calibration.sumCounter;
+        calibrationProductCounter += calibration.productCounter;
+        peakFactorSize = Math.max(peakFactorSize, calibration.peakFactorSize);
+        totalFactorSize += calibration.totalFactorSize;
+    }
+
+    public long getCalibrationSumCounter() {
+        return calibrationSumCounter;
+    }
+
+    public long getCalibrationProductCounter() {
+        return calibrationProductCounter;
+    }
+
+    /**
+     * Adds the counts of another counter to this counter.
+     *
+     * @param other the counter to add
+     */
+    public void add(Counter other) {
+        sumCounter += other.sumCounter;
+        productCounter += other.productCounter;
+        prunedFactorCounter += other.prunedFactorCounter;
+        peakFactorSize = Math.max(peakFactorSize, other.peakFactorSize);
+        totalFactorSize += other.totalFactorSize;
+        calibrationSumCounter += other.calibrationSumCounter;
+        calibrationProductCounter += other.calibrationProductCounter;
+    }
+
+    public void reset() {
+        sumCounter = 0;
+        productCounter = 0;
+        prunedFactorCounter = 0;
+        peakFactorSize = 0;
+        totalFactorSize = 0;
+        calibrationSumCounter = 0;
+        calibrationProductCounter = 0;
+    }
+
+
+}
@@ -0,0 +1,349 @@
+package bayesnet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Answers a query with method 1, by enumerating every outcome of the query and hidden variables.
+ * <p>
+ * A row of the enumeration is an array of outcome indices over the hidden variables, the evidence variables and the
+ * query variables, in this order. The query variables, then the hidden variables, are advanced with an odometer (the
+ * first variable of each cycles slowest) while the evidence stays fixed, and the probability of a row is the product of
+ * one CPT entry per variable, found from the strides of the variables of its CPT. No object is created per row.
+ * <p>
+ * The rows are numbered in this order and split into ranges of {@value #RANGE_ROWS} rows, which are summed in parallel
+ * on a {@link java.util.concurrent.ForkJoinPool} (the pool of the calling task, or the common pool) with compensated
+ * (Kahan) summation. The ranges only depend on the number of rows, and their sums are merged in order, so the answer is
+ * the same whatever the number of threads. The counts are the ones of adding the rows one by one: a product per CPT
+ * entry after the first of a row, and a sum per row added to a non-zero total of the query rows or of the other rows.
+ * <p>
+ * In log space the row is the sum of the logarithms of its CPT entries, and the rows are added with a streaming
+ * log-sum-exp (the total is kept as a maximum and a sum scaled by it), so rows whose product underflows still count,
+ * and the answer is not 0/0. The counts are the same, except for the sums of the rows that underflow to 0 in linear
+ * space.
+ */
+class Enumeration {
+    /**
+     * Ranges with at most this many rows are summed by a single task.
+     */
+    static final long RANGE_ROWS = 1 << 14;
+
+    private final int numVariables;
+    private final int queryStart; // the first query variable in a row, the evidence variables are just before
+    private final int numHidden;
+    private final int[] cardinalities;
+    private final double[][] cpts;
+    private final int[][] cptPositions; // where the variables of each CPT are in the row
+    private final int[][] cptStrides;
+    private final int[] evidence; // the outcome index of each evidence variable
+    private final int[] queryPositions; // where the query outcomes are in the row
+    private final int[] queryValues;
+    private final long hiddenRows;
+    private final long rows;
+    private final boolean logSpace;
+
+    /**
+     * @param queryVars        the query variables, in enumeration order
+     * @param hiddenVars       the hidden variables, in enumeration order
+     * @param queryOutcomes    the query outcomes
+     * @param evidenceOutcomes the evidence outcomes
+     * @param logSpace         whether to enumerate in log space
+     */
+    Enumeration(List<Variable> queryVars, List<Variable> hiddenVars, List<VariableOutcome> queryOutcomes, List<VariableOutcome> evidenceOutcomes,
+                boolean logSpace) {
+        this.logSpace = logSpace;
+        List<Variable> rowVariables = new ArrayList<>(hiddenVars);
+        for (VariableOutcome vo : evidenceOutcomes) {
+            rowVariables.add(vo.variable);
+        }
+        rowVariables.addAll(queryVars);
+        this.numVariables = rowVariables.size();
+        this.numHidden = hiddenVars.size();
+        this.queryStart = numHidden + evidenceOutcomes.size();
+
+        this.cardinalities = new int[numVariables];
+        this.cpts = new double[numVariables][];
+        this.cptPositions = new int[numVariables][];
+        this.cptStrides = new int[numVariables][];
+        for (int i = 0; i < numVariables; i++) {
+            Variable variable = rowVariables.get(i);
+            cardinalities[i] = variable.getOutcomes().size();
+            List<Variable> cptVariables = variable.getFactor().getVariables();
+            cpts[i] = logSpace ? variable.getFactor().toLogSpace().getValues() : variable.getFactor().getValues();
+            cptPositions[i] = new int[cptVariables.size()];
+            cptStrides[i] = new int[cptVariables.size()];
+            int stride = 1;
+            for (int j = cptVariables.size() - 1; j >= 0; j--) {
+                cptPositions[i][j] = rowVariables.lastIndexOf(cptVariables.get(j)); // the last outcome of a variable wins
+                if (cptPositions[i][j] == -1) {
+                    throw new IllegalArgumentException("Variable not found in the factor: " + cptVariables.get(j).getName());
+                }
+                cptStrides[i][j] = stride;
+                stride *= cptVariables.get(j).getOutcomes().size();
+            }
+        }
+        this.evidence = new int[evidenceOutcomes.size()];
+        for (int i = 0; i < evidence.length; i++) {
+            evidence[i] = evidenceOutcomes.get(i).outcomeIndex;
+        }
+        this.queryPositions = new int[queryOutcomes.size()];
+        this.queryValues = new int[queryOutcomes.size()];
+        for (int i = 0; i < queryPositions.length; i++) {
+            queryPositions[i] = queryStart + queryVars.indexOf(queryOutcomes.get(i).variable);
+            queryValues[i] = queryOutcomes.get(i).outcomeIndex;
+        }
+
+        this.hiddenRows = combinations(0, numHidden);
+        this.rows = hiddenRows * combinations(queryStart, numVariables);
+    }
+
+    private long combinations(int from, int to) {
+        long count = 1;
+        for (int i = from; i < to; i++) {
+            count = Math.multiplyExact(count, cardinalities[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @param counter the counter of the query
+     * @return the probability of the query outcomes given the evidence
+     */
+    double probability(Counter counter) {
+        RangeSums sums = rows <= RANGE_ROWS ? sumRange(0, rows) : new SumRange(0, rows).invoke();
+
+        // each row multiplies one CPT entry per variable
+        counter.incrementProductCounter(rows * (numVariables - 1));
+        counter.incrementSumCounter(sums.query.countedSums + sums.other.countedSums);
+        counter.incrementSumCounter(); // the denominator
+
+        if (logSpace) {
+            double logNumerator = sums.query.logSum();
+            double logOther = sums.other.logSum();
+            double max = Math.max(logNumerator, logOther);
+            double logDenominator = max + Math.log(Math.exp(logNumerator - max) + Math.exp(logOther - max));
+            return Math.exp(logNumerator - logDenominator);
+        }
+
+        double numerator = sums.query.sum; // the probability of the query & evidence
+        double denominator = sums.other.sum; // the probability of the (query & evidence) + (!query & evidence)
+        denominator += numerator;
+
+        // return the normalized probability
+        return numerator / denominator;
+    }
+
+    /**
+     * Sums the rows in [from, to).
+     */
+    private RangeSums sumRange(long from, long to) {
+        // the first row of the range: the query variables count the blocks of hidden rows
+        int[] row = new int[numVariables];
+        setDigits(row, queryStart, numVariables, from / hiddenRows);
+        setDigits(row, 0, numHidden, from % hiddenRows);
+        System.arraycopy(evidence, 0, row, numHidden, evidence.length);
+
+        RangeSums sums = new RangeSums(logSpace);
+        boolean matchesQuery = matchesQuery(row);
+        for (long r = from; r < to; r++) {
+            double prob = cpts[0][cptOffset(row, cptPositions[0], cptStrides[0])];
+            if (logSpace) {
+                for (int i = 1; i < numVariables; i++) {
+                    prob += cpts[i][cptOffset(row, cptPositions[i], cptStrides[i])];
+                }
+                (matchesQuery ? sums.query : sums.other).addLog(prob);
+            } else {
+                for (int i = 1; i < numVariables; i++) {
+                    prob *= cpts[i][cptOffset(row, cptPositions[i], cptStrides[i])];
+                }
+                (matchesQuery ? sums.query : sums.other).add(prob);
+            }
+
+            if (!advance(row, 0, numHidden)) {
+                advance(row, queryStart, numVariables);
+                matchesQuery = matchesQuery(row);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sets the outcomes of the variables in [from, to) to the given combination, the last variable cycling fastest.
+     */
+    private void setDigits(int[] row, int from, int to, long combination) {
+        for (int i = to - 1; i >= from; i--) {
+            row[i] = (int) (combination % cardinalities[i]);
+            combination /= cardinalities[i];
+        }
+    }
+
+    /**
+     * @return whether the outcomes of the query variables are the query's
+     */
+    private boolean matchesQuery(int[] row) {
+        for (int i = 0; i < queryPositions.length; i++) {
+            if (row[queryPositions[i]] != queryValues[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the offset in a CPT of the entry of the row
+     */
+    private static int cptOffset(int[] row, int[] positions, int[] strides) {
+        int offset = 0;
+        for (int j = 0; j < positions.length; j++) {
+            offset += row[positions[j]] * strides[j];
+        }
+        return offset;
+    }
+
+    /**
+     * Advances the outcomes of the variables in [from, to) to the next combination, the last variable cycling fastest.
+     *
+     * @return false after the last combination, when the outcomes are back to 0
+     */
+    private boolean advance(int[] row, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (++row[i] < cardinalities[i]) {
+                return true;
+            }
+            row[i] = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Splits [from, to) in half until the ranges are small enough, and merges the sums of the halves in order.
+     */
+    private class SumRange extends RecursiveTask<RangeSums> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        SumRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RangeSums compute() {
+            if (to - from <= RANGE_ROWS) {
+                return sumRange(from, to);
+            }
+            long middle = (from + to) >>> 1;
+            SumRange left = new SumRange(from, middle);
+            SumRange right = new SumRange(middle, to);
+            invokeAll(left, right);
+            RangeSums sums = left.join();
+            sums.merge(right.join());
+            return sums;
+        }
+    }
+
+    /**
+     * The sums of the query rows and of the other rows of a range.
+     */
+    private static class RangeSums {
+        final Sum query;
+        final Sum other;
+
+        RangeSums(boolean logSpace) {
+            this.query = new Sum(logSpace);
+            this.other = new Sum(logSpace);
+        }
+
+        void merge(RangeSums next) {
+            query.merge(next.query);
+            other.merge(next.other);
+        }
+    }
+
+    /**
+     * A compensated sum of row probabilities, with the number of sums that adding them one by one counts: a row added to
+     * a non-zero total is a sum, and as the probabilities are not negative, these are the rows after the first non-zero one.
+     * In log space the total is {@code max + log(sum)}: the largest row so far, and the sum of the rows scaled by it.
+     */
+    private static class Sum {
+        final boolean logSpace;
+        double sum;
+        double compensation; // the low-order part lost by the last addition, negated
+        double max = Double.NEGATIVE_INFINITY;
+        long rows;
+        long countedSums;
+        boolean nonZero;
+
+        Sum(boolean logSpace) {
+            this.logSpace = logSpace;
+        }
+
+        void add(double value) {
+            count(value > 0);
+            addCompensated(value);
+        }
+
+        /**
+         * Adds a row given by the logarithm of its probability.
+         */
+        void addLog(double logValue) {
+            count(logValue != Double.NEGATIVE_INFINITY);
+            if (logValue <= max) {
+                if (logValue != Double.NEGATIVE_INFINITY) {
+                    sum += Math.exp(logValue - max);
+                }
+            } else {
+                sum = sum * Math.exp(max - logValue) + 1;
+                max = logValue;
+            }
+        }
+
+        private void count(boolean rowNonZero) {
+            if (nonZero) {
+                countedSums++;
+            } else if (rowNonZero) {
+                nonZero = true;
+            }
+            rows++;
+        }
+
+        /**
+         * @return the logarithm of the total in log space
+         */
+        double logSum() {
+            return max == Double.NEGATIVE_INFINITY ? max : max + Math.log(sum);
+        }
+
+        /**
+         * Adds the rows of the next range.
+         */
+        void merge(Sum next) {
+            countedSums += nonZero ? next.rows : next.countedSums;
+            nonZero |= next.nonZero;
+            rows += next.rows;
+            if (logSpace) {
+                if (next.max <= max) {
+                    if (next.max != Double.NEGATIVE_INFINITY) {
+                        sum += next.sum * Math.exp(next.max - max);
+                    }
+                } else {
+                    sum = sum * Math.exp(max - next.max) + next.sum;
+                    max = next.max;
+                }
+                return;
+            }
+            addCompensated(next.sum);
+            addCompensated(-next.compensation);
+        }
+
+        private void addCompensated(double value) {
+            double y = value - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+    }
+}
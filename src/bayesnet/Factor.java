@@ -0,0 +1,1032 @@
+package bayesnet;
+
+import java.util.*;
+
+/**
+ * Represents a factor in a Bayesian network.
+ * A factor is defined over a set of variables and provides the probability
+ * for each possible assignment of outcomes to these variables.
+ * <p>
+ * The table is stored as a flat {@code double[]} in row-major order: the last variable cycles fastest.
+ * Each variable has a stride, so the row of an assignment is {@code sum(outcomeIndex[i] * strides[i])}.
+ * <p>
+ * A factor in log space (see {@link #toLogSpace()}) stores the natural logarithms of the probabilities, so that long
+ * products do not underflow: {@link #join(Factor, Factor, Counter)} adds the logarithms, {@link #eliminate(Variable, Counter)}
+ * and {@link #normalize(Counter)} use log-sum-exp, and {@link #getProbability(List)} converts back. The operations are
+ * counted as in linear space. Joining a factor in log space with one in linear space converts the other one.
+ * <p>
+ * A factor that allows the sparse layout (see {@link #allowSparse()}) stores only its non-zero rows when they are at
+ * most {@value #SPARSE_DENSITY} of a table of at least {@value #SPARSE_MIN_SIZE} rows: their sorted row numbers in an {@code int[]} and their values in a
+ * {@code double[]}. Each operation measures the density of its result and picks its layout, and an operation on a
+ * sparse factor only visits, and counts, the stored rows: a join multiplies the pairs of non-zero rows, an elimination
+ * adds the stored rows of each group. Evidence and deterministic CPTs (logical gates, one-hot encodings) make most
+ * rows 0, and the joins of such factors even more so.
+ */
+public class Factor {
+    private static final FactorKernels KERNELS = FactorKernels.INSTANCE;
+
+    /**
+     * A factor that allows the sparse layout stores only its non-zero rows when they are at most this fraction of its
+     * table: a stored row takes 12 bytes instead of 8, and is slower to find.
+     */
+    public static final double SPARSE_DENSITY = 0.25;
+
+    /**
+     * Factors with fewer rows stay dense: they are small anyway, and the dense operations are faster.
+     */
+    public static final int SPARSE_MIN_SIZE = 64;
+
+    private final List<Variable> variables;
+    private final int[] cardinalities;
+    private final int[] strides;
+    private final int size; // the number of rows of the table, stored or not
+    private final double[] values; // the table, or the stored rows of a sparse factor
+    private final int[] rows; // the sorted row numbers of the values of a sparse factor, null for a dense factor
+    private final boolean logSpace;
+    private final boolean sparseAllowed;
+    private volatile Factor logSpaceCopy; // the factor in log space, computed on the first call of toLogSpace()
+    private volatile Factor sparseCopy; // the factor that allows the sparse layout, computed on the first call of allowSparse()
+
+    /**
+     * Constructs a Factor for the given variables and their probabilities.
+     *
+     * @param variables     The list of variables (parents + child, order matters).
+     * @param probabilities The probability values for each combination of outcomes.
+     */
+    public Factor(List<Variable> variables, double[] probabilities) {
+        this(variables, probabilities, true);
+    }
+
+    /**
+     * Constructs a Factor for the given variables and their probabilities, optionally without copying them.
+     *
+     * @param variables     The list of variables (parents + child, order matters).
+     * @param probabilities The probability values for each combination of outcomes.
+     * @param copy          Whether to copy the probabilities, or to own the array, which must not be modified afterwards.
+     */
+    Factor(List<Variable> variables, double[] probabilities, boolean copy) {
+        this.variables = new ArrayList<>(variables);
+        this.cardinalities = cardinalitiesOf(this.variables);
+        this.strides = stridesOf(cardinalities);
+        int size = tableSize(cardinalities);
+        if (probabilities.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " probabilities but got " + probabilities.length);
+        }
+        this.size = size;
+        this.values = copy ? Arrays.copyOf(probabilities, size) : probabilities;
+        this.rows = null;
+        this.logSpace = false;
+        this.sparseAllowed = false;
+    }
+
+    /**
+     * Constructs a Factor for the given variables and their CPT table.
+     *
+     * @param variables   The list of variables (parents + child, order matters).
+     * @param factorTable The factor table mapping each combination of outcomes to its probability.
+     */
+    public Factor(List<Variable> variables, Map<List<String>, Double> factorTable) {
+        this.variables = new ArrayList<>(variables);
+        this.cardinalities = cardinalitiesOf(this.variables);
+        this.strides = stridesOf(cardinalities);
+        int size = tableSize(cardinalities);
+        if (factorTable.size() != size) {
+            throw new IllegalArgumentException("Expected " + size + " rows but got " + factorTable.size());
+        }
+        this.size = size;
+        this.values = new double[size];
+        this.rows = null;
+        for (Map.Entry<List<String>, Double> entry : factorTable.entrySet()) {
+            List<String> combination = entry.getKey();
+            int row = 0;
+            for (int i = 0; i < this.variables.size(); i++) {
+                int outcomeIndex = this.variables.get(i).getOutcomes().indexOf(combination.get(i));
+                if (outcomeIndex == -1) {
+                    throw new IllegalArgumentException("Combination of outcomes not found in the factor table: " + combination);
+                }
+                row += outcomeIndex * strides[i];
+            }
+            values[row] = entry.getValue();
+        }
+        this.logSpace = false;
+        this.sparseAllowed = false;
+    }
+
+    /**
+     * Wraps an already computed table. The arrays are owned by the new factor and must not be modified afterwards.
+     *
+     * @param variables     The list of variables (owned by the new factor).
+     * @param cardinalities The number of outcomes of each variable.
+     * @param rows          The sorted row numbers of the values, or null if the values are the whole table.
+     * @param values        The table in row-major order, or the values of the rows.
+     * @param logSpace      Whether the table holds the logarithms of the probabilities.
+     * @param sparseAllowed Whether the results of the operations may be sparse.
+     */
+    private Factor(List<Variable> variables, int[] cardinalities, int[] rows, double[] values, boolean logSpace, boolean sparseAllowed) {
+        this.variables = variables;
+        this.cardinalities = cardinalities;
+        this.strides = stridesOf(cardinalities);
+        this.size = rows == null ? values.length : tableSize(cardinalities);
+        this.values = values;
+        this.rows = rows;
+        this.logSpace = logSpace;
+        this.sparseAllowed = sparseAllowed;
+    }
+
+    /**
+     * Wraps a computed table in the layout its density calls for: only its non-zero rows if the factor allows the sparse
+     * layout, has at least {@link #SPARSE_MIN_SIZE} rows and at most {@link #SPARSE_DENSITY} of them are non-zero, the
+     * whole table otherwise.
+     */
+    private static Factor withLayout(List<Variable> variables, int[] cardinalities, double[] values, boolean logSpace, boolean sparseAllowed) {
+        if (!sparseAllowed || values.length < SPARSE_MIN_SIZE) {
+            return new Factor(variables, cardinalities, null, values, logSpace, sparseAllowed);
+        }
+        double zero = zero(logSpace);
+        int stored = 0;
+        for (double value : values) {
+            if (value != zero) {
+                stored++;
+            }
+        }
+        if (stored > SPARSE_DENSITY * values.length) {
+            return new Factor(variables, cardinalities, null, values, logSpace, true);
+        }
+        int[] rows = new int[stored];
+        double[] storedValues = new double[stored];
+        for (int row = 0, i = 0; i < stored; row++) {
+            if (values[row] != zero) {
+                rows[i] = row;
+                storedValues[i++] = values[row];
+            }
+        }
+        return new Factor(variables, cardinalities, rows, storedValues, logSpace, true);
+    }
+
+    /**
+     * Wraps the first {@code stored} rows computed by a sparse operation in the layout their density calls for, like
+     * {@link #withLayout(List, int[], double[], boolean, boolean)}.
+     */
+    private static Factor withLayout(List<Variable> variables, int[] cardinalities, int[] rows, double[] values, int stored, boolean logSpace) {
+        int size = tableSize(cardinalities);
+        if (stored > SPARSE_DENSITY * size || size < SPARSE_MIN_SIZE) {
+            double[] table = new double[size];
+            if (logSpace) {
+                Arrays.fill(table, Double.NEGATIVE_INFINITY);
+            }
+            for (int i = 0; i < stored; i++) {
+                table[rows[i]] = values[i];
+            }
+            return new Factor(variables, cardinalities, null, table, logSpace, true);
+        }
+        if (stored < rows.length) {
+            rows = Arrays.copyOf(rows, stored);
+            values = Arrays.copyOf(values, stored);
+        }
+        return new Factor(variables, cardinalities, rows, values, logSpace, true);
+    }
+
+    /**
+     * @return the value of a probability of 0
+     */
+    private static double zero(boolean logSpace) {
+        return logSpace ? Double.NEGATIVE_INFINITY : 0.0;
+    }
+
+    /**
+     * @return the value of a row of the table, stored or not
+     */
+    private double value(int row) {
+        if (rows == null) {
+            return values[row];
+        }
+        int i = Arrays.binarySearch(rows, row);
+        return i >= 0 ? values[i] : zero(logSpace);
+    }
+
+    /**
+     * Returns the factor in log space. The copy of a factor is computed once and kept, so the CPTs of a network are only
+     * converted on their first query.
+     *
+     * @return the factor with the natural logarithms of the probabilities (-Infinity for 0), or this factor if it is
+     * already in log space
+     */
+    public Factor toLogSpace() {
+        if (logSpace) {
+            return this;
+        }
+        Factor copy = logSpaceCopy;
+        if (copy == null) {
+            double[] logValues = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                logValues[i] = Math.log(values[i]);
+            }
+            // the rows that are not stored stay 0, -Infinity in log space
+            copy = new Factor(variables, cardinalities, rows, logValues, true, sparseAllowed);
+            logSpaceCopy = copy;
+        }
+        return copy;
+    }
+
+    public boolean isLogSpace() {
+        return logSpace;
+    }
+
+    /**
+     * Returns the factor whose operations may store their results sparsely (see {@link #SPARSE_DENSITY}), itself stored
+     * sparsely if it is sparse enough. Like {@link #toLogSpace()}, the copy of a factor is computed once and kept.
+     *
+     * @return the factor with the same values that allows the sparse layout, or this factor if it already does
+     */
+    public Factor allowSparse() {
+        if (sparseAllowed) {
+            return this;
+        }
+        Factor copy = sparseCopy;
+        if (copy == null) {
+            copy = withLayout(variables, cardinalities, values, logSpace, true);
+            sparseCopy = copy;
+        }
+        return copy;
+    }
+
+    /**
+     * @return whether the factor only stores its non-zero rows
+     */
+    public boolean isSparse() {
+        return rows != null;
+    }
+
+    /**
+     * @return the CPT as the factors of a query take it, in log space and allowing the sparse layout if asked
+     */
+    Factor forQuery(boolean logSpace, boolean sparse) {
+        Factor factor = sparse ? allowSparse() : this;
+        return logSpace ? factor.toLogSpace() : factor;
+    }
+
+    private static int[] cardinalitiesOf(List<Variable> variables) {
+        int[] cardinalities = new int[variables.size()];
+        for (int i = 0; i < cardinalities.length; i++) {
+            cardinalities[i] = variables.get(i).getOutcomes().size();
+        }
+        return cardinalities;
+    }
+
+    private static int[] stridesOf(int[] cardinalities) {
+        int[] strides = new int[cardinalities.length];
+        int stride = 1;
+        for (int i = cardinalities.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= cardinalities[i];
+        }
+        return strides;
+    }
+
+    /**
+     * @return the number of rows of a table
+     * @throws IllegalStateException if the table has more rows than an array can hold
+     */
+    private static int tableSize(int[] cardinalities) {
+        long size = 1;
+        for (int cardinality : cardinalities) {
+            size *= cardinality;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("A factor over " + cardinalities.length + " variables has more than "
+                        + Integer.MAX_VALUE + " rows (see BayesNet.setMemoryBudget)");
+            }
+        }
+        return (int) size;
+    }
+
+    /**
+     * Returns the probability for the given assignment of variable outcomes.
+     *
+     * @param vars The list of VariableOutcome representing the assignment.
+     * @return The probability for the assignment.
+     * @throws IllegalArgumentException if the assignment is incomplete.
+     */
+    public double getProbability(List<VariableOutcome> vars) {
+        double value = value(row(vars));
+        return logSpace ? Math.exp(value) : value;
+    }
+
+    /**
+     * Returns the natural logarithm of the probability for the given assignment of variable outcomes.
+     *
+     * @param vars The list of VariableOutcome representing the assignment.
+     * @return The logarithm of the probability for the assignment (-Infinity for 0).
+     * @throws IllegalArgumentException if the assignment is incomplete.
+     */
+    public double getLogProbability(List<VariableOutcome> vars) {
+        double value = value(row(vars));
+        return logSpace ? value : Math.log(value);
+    }
+
+    private int row(List<VariableOutcome> vars) {
+        int row = 0;
+        for (int i = 0; i < variables.size(); i++) {
+            Variable currentVar = variables.get(i);
+            // the last assignment of a variable wins, like a map would
+            int outcomeIndex = -1;
+            for (VariableOutcome vo : vars) {
+                if (vo.variable.equals(currentVar)) {
+                    outcomeIndex = vo.outcomeIndex;
+                }
+            }
+            if (outcomeIndex == -1) {
+                throw new IllegalArgumentException("Variable not found in the factor: " + currentVar.getName());
+            }
+            row += outcomeIndex * strides[i];
+        }
+        return row;
+    }
+
+
+    /**
+     * Eliminates a variable from the factor by summing out its outcomes.
+     *
+     * @param variable The variable to be eliminated.
+     * @return A new factor with the variable eliminated. (the current factor is not modified)
+     */
+    public Factor eliminate(Variable variable) {
+        return eliminate(variable, new Counter());
+    }
+
+    /**
+     * Eliminates a variable from the factor by summing out its outcomes.
+     *
+     * @param variable The variable to be eliminated.
+     * @param counter  The counter of the query, counts the sums.
+     * @return A new factor with the variable eliminated. (the current factor is not modified)
+     */
+    public Factor eliminate(Variable variable, Counter counter) {
+        // check if the variable is in the factor
+        int varIndex = variables.indexOf(variable);
+        if (varIndex == -1) {
+            throw new IllegalArgumentException("Variable " + variable.getName() + " not found in the factor.");
+        }
+        List<Variable> newVariables = new ArrayList<>(variables);
+        newVariables.remove(varIndex);
+        if (rows != null) {
+            return eliminateSparse(varIndex, newVariables, counter);
+        }
+
+        // the table is split into `outer` blocks, each holding `cardinality` runs of `stride` rows
+        int cardinality = cardinalities[varIndex];
+        int stride = strides[varIndex];
+        int outer = values.length / (cardinality * stride);
+        double[] newValues = new double[outer * stride];
+        if (logSpace) {
+            logSumExpKernel(values, cardinality, stride, outer, newValues);
+        } else {
+            for (int o = 0; o < outer; o++) {
+                int source = o * cardinality * stride;
+                int target = o * stride;
+                for (int k = 0; k < cardinality; k++) {
+                    KERNELS.addTo(values, source, newValues, target, stride);
+                    source += stride;
+                }
+            }
+        }
+        // every row but the first of each group is added to the group sum
+        counter.incrementSumCounter(values.length - newValues.length);
+        counter.recordFactorSize(newValues.length);
+
+        return withLayout(newVariables, removeIndex(cardinalities, varIndex), newValues, logSpace, sparseAllowed);
+    }
+
+    /**
+     * Sums out a variable of a sparse factor: the stored rows are sorted by the row they are added to, and each group is
+     * summed (with log-sum-exp in log space). Only the stored rows are visited and counted.
+     */
+    private Factor eliminateSparse(int varIndex, List<Variable> newVariables, Counter counter) {
+        int stride = strides[varIndex];
+        int block = cardinalities[varIndex] * stride;
+
+        // the target row in the high half, the index of the stored row in the low half
+        long[] keys = new long[rows.length];
+        boolean sorted = true;
+        for (int i = 0; i < rows.length; i++) {
+            long target = rows[i] / block * stride + rows[i] % stride;
+            keys[i] = target << 32 | i;
+            sorted &= i == 0 || keys[i] > keys[i - 1];
+        }
+        if (!sorted) { // already sorted when the variable is the last one
+            Arrays.sort(keys);
+        }
+
+        int[] newRows = new int[rows.length];
+        double[] newValues = new double[rows.length];
+        int stored = 0;
+        for (int start = 0, end; start < keys.length; start = end) {
+            int target = (int) (keys[start] >>> 32);
+            end = start + 1;
+            while (end < keys.length && (int) (keys[end] >>> 32) == target) {
+                end++;
+            }
+            double sum = 0.0;
+            if (logSpace) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = start; k < end; k++) {
+                    max = Math.max(max, values[(int) keys[k]]);
+                }
+                for (int k = start; k < end; k++) {
+                    sum += Math.exp(values[(int) keys[k]] - max);
+                }
+                sum = max + Math.log(sum);
+            } else {
+                for (int k = start; k < end; k++) {
+                    sum += values[(int) keys[k]];
+                }
+            }
+            newRows[stored] = target;
+            newValues[stored++] = sum;
+        }
+        // every stored row but the first of each group is added to the group sum
+        counter.incrementSumCounter(rows.length - stored);
+        counter.recordFactorSize(stored);
+
+        return withLayout(newVariables, removeIndex(cardinalities, varIndex), newRows, newValues, stored, logSpace);
+    }
+
+    /**
+     * Sums out a variable in log space: each output row is {@code max + log(sum(exp(x - max)))} over the {@code cardinality}
+     * input rows it sums, which does not overflow or underflow. Like the linear sum, every pass runs over contiguous
+     * runs of {@code stride} rows, so the loops vectorize: one pass for the maxima, one for the scaled sums.
+     *
+     * @param values      the table, {@code outer} blocks of {@code cardinality} runs of {@code stride} rows
+     * @param cardinality the number of outcomes of the variable
+     * @param stride      the stride of the variable
+     * @param outer       the number of blocks
+     * @param out         the table without the variable, {@code outer} runs of {@code stride} rows
+     */
+    private static void logSumExpKernel(double[] values, int cardinality, int stride, int outer, double[] out) {
+        double[] sums = new double[stride];
+        for (int o = 0; o < outer; o++) {
+            int first = o * cardinality * stride;
+            int target = o * stride;
+            System.arraycopy(values, first, out, target, stride);
+            for (int k = 1, source = first + stride; k < cardinality; k++, source += stride) {
+                for (int i = 0; i < stride; i++) {
+                    out[target + i] = Math.max(out[target + i], values[source + i]);
+                }
+            }
+            Arrays.fill(sums, 0.0);
+            for (int k = 0, source = first; k < cardinality; k++, source += stride) {
+                for (int i = 0; i < stride; i++) {
+                    sums[i] += Math.exp(values[source + i] - out[target + i]);
+                }
+            }
+            for (int i = 0; i < stride; i++) {
+                // all the rows are 0 (-Infinity), keep -Infinity instead of NaN
+                if (out[target + i] != Double.NEGATIVE_INFINITY) {
+                    out[target + i] += Math.log(sums[i]);
+                }
+            }
+        }
+    }
+
+    private static int[] removeIndex(int[] array, int index) {
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+
+    /**
+     * Sets the evidence for the factor. Will remove each row that does not match the evidence, and remove the corresponding variable from the factor.
+     *
+     * @param evidences The evidence to set for the factor.
+     * @return A new factor without the evidence variables and with the remaining probabilities.
+     */
+    public Factor setEvidences(List<VariableOutcome> evidences) {
+        // the row offset of the evidence outcomes, and which variables are fixed by the evidence
+        boolean[] isEvidence = new boolean[variables.size()];
+        int[] evidenceOutcomes = new int[variables.size()];
+        int base = 0;
+        int numEvidence = 0;
+        for (VariableOutcome vo : evidences) {
+            int idx = variables.indexOf(vo.variable);
+            if (idx != -1 && !isEvidence[idx]) {
+                isEvidence[idx] = true;
+                evidenceOutcomes[idx] = vo.outcomeIndex;
+                base += vo.outcomeIndex * strides[idx];
+                numEvidence++;
+            }
+        }
+
+        if (numEvidence == 0) {
+            return this; // no evidence on this factor, return the original factor
+        }
+
+        // the remaining variables keep their strides in the original table
+        int remaining = variables.size() - numEvidence;
+        List<Variable> newVariables = new ArrayList<>(remaining);
+        int[] newCardinalities = new int[remaining];
+        int[] sourceStrides = new int[remaining];
+        int size = 1;
+        for (int i = 0, j = 0; i < variables.size(); i++) {
+            if (!isEvidence[i]) {
+                newVariables.add(variables.get(i));
+                newCardinalities[j] = cardinalities[i];
+                sourceStrides[j] = strides[i];
+                size *= cardinalities[i];
+                j++;
+            }
+        }
+        if (rows != null) {
+            return setEvidencesSparse(isEvidence, evidenceOutcomes, newVariables, newCardinalities);
+        }
+
+        // walk the remaining variables with an odometer (last variable fastest)
+        double[] newValues = new double[size];
+        int[] digits = new int[remaining];
+        int source = base;
+        for (int row = 0; row < size; row++) {
+            newValues[row] = values[source];
+            for (int j = remaining - 1; j >= 0; j--) {
+                source += sourceStrides[j];
+                if (++digits[j] < newCardinalities[j]) {
+                    break;
+                }
+                source -= sourceStrides[j] * newCardinalities[j];
+                digits[j] = 0;
+            }
+        }
+
+        return withLayout(newVariables, newCardinalities, newValues, logSpace, sparseAllowed);
+    }
+
+    /**
+     * Keeps the stored rows that match the evidence, without the outcomes of the evidence variables. The rows stay sorted.
+     */
+    private Factor setEvidencesSparse(boolean[] isEvidence, int[] evidenceOutcomes, List<Variable> newVariables, int[] newCardinalities) {
+        int[] newStrides = stridesOf(newCardinalities);
+        int[] newRows = new int[rows.length];
+        double[] newValues = new double[rows.length];
+        int stored = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int newRow = 0;
+            boolean matches = true;
+            for (int j = 0, k = 0; j < variables.size() && matches; j++) {
+                int outcomeIndex = rows[i] / strides[j] % cardinalities[j];
+                if (!isEvidence[j]) {
+                    newRow += outcomeIndex * newStrides[k++];
+                } else if (outcomeIndex != evidenceOutcomes[j]) {
+                    matches = false;
+                }
+            }
+            if (matches) {
+                newRows[stored] = newRow;
+                newValues[stored++] = values[i];
+            }
+        }
+        return withLayout(newVariables, newCardinalities, newRows, newValues, stored, logSpace);
+    }
+
+    /**
+     * Joins two factors into one. The resulting factor will have all variables from both factors.
+     * The probabilities will be calculated based on the joint distribution.
+     *
+     * @return The resulting factor with all variables and their probabilities.
+     */
+    public static Factor join(Factor f1, Factor f2) {
+        return join(f1, f2, new Counter());
+    }
+
+    /**
+     * Joins two factors into one. The resulting factor will have all variables from both factors.
+     * The probabilities will be calculated based on the joint distribution.
+     *
+     * @param counter The counter of the query, counts the products.
+     * @return The resulting factor with all variables and their probabilities.
+     */
+    public static Factor join(Factor f1, Factor f2, Counter counter) {
+        if (f1.logSpace != f2.logSpace) {
+            f1 = f1.toLogSpace();
+            f2 = f2.toLogSpace();
+        }
+
+        // get all variables from both factors
+        Set<Variable> allVariables = new LinkedHashSet<>(f1.variables);
+        allVariables.addAll(f2.variables);
+
+        // covert the set to a list
+        List<Variable> allVariablesList = new ArrayList<>(allVariables);
+        int numVariables = allVariablesList.size();
+
+        // the stride of each variable of the joint factor inside f1 and f2 (0 if the factor does not have it)
+        int[] cardinalities = cardinalitiesOf(allVariablesList);
+        int[] f1Strides = new int[numVariables];
+        int[] f2Strides = new int[numVariables];
+        for (int j = 0; j < numVariables; j++) {
+            Variable currentVar = allVariablesList.get(j);
+            int idx1 = f1.variables.indexOf(currentVar);
+            int idx2 = f2.variables.indexOf(currentVar);
+            f1Strides[j] = idx1 == -1 ? 0 : f1.strides[idx1];
+            f2Strides[j] = idx2 == -1 ? 0 : f2.strides[idx2];
+        }
+        if (f1.rows != null || f2.rows != null) {
+            return joinSparse(f1, f2, allVariablesList, cardinalities, f1Strides, f2Strides, counter);
+        }
+
+        int totalCombinations = tableSize(cardinalities);
+        double[] newValues = new double[totalCombinations];
+        joinKernel(f1.values, f1Strides, f2.values, f2Strides, cardinalities, newValues, f1.logSpace);
+        counter.incrementProductCounter(totalCombinations);
+        counter.recordFactorSize(totalCombinations);
+        return withLayout(allVariablesList, cardinalities, newValues, f1.logSpace, f1.sparseAllowed || f2.sparseAllowed);
+    }
+
+    /**
+     * Joins two factors, one of them sparse at least: each stored row of the driver (the sparse factor with the fewest
+     * stored rows) is multiplied with the non-zero rows of the other factor that match it, found by the strides of the
+     * variables the driver does not have. Only these products are computed and counted.
+     */
+    private static Factor joinSparse(Factor f1, Factor f2, List<Variable> jointVariables, int[] cardinalities, int[] f1Strides,
+                                     int[] f2Strides, Counter counter) {
+        boolean firstDrives = f1.rows != null && (f2.rows == null || f1.rows.length <= f2.rows.length);
+        Factor driver = firstDrives ? f1 : f2;
+        Factor other = firstDrives ? f2 : f1;
+        int[] driverStrides = firstDrives ? f1Strides : f2Strides;
+        int[] otherStrides = firstDrives ? f2Strides : f1Strides;
+        int[] jointStrides = stridesOf(cardinalities);
+        int size = tableSize(cardinalities);
+
+        // the joint variables that only the other factor has, and the number of their combinations
+        int[] otherOnly = new int[cardinalities.length];
+        int numOtherOnly = 0;
+        long combinations = 1;
+        for (int j = 0; j < cardinalities.length; j++) {
+            if (driverStrides[j] == 0) {
+                otherOnly[numOtherOnly++] = j;
+                combinations *= cardinalities[j];
+            }
+        }
+
+        double zero = zero(f1.logSpace);
+        int capacity = (int) Math.min(size, Math.max(16, driver.rows.length * combinations));
+        int[] newRows = new int[capacity];
+        double[] newValues = new double[capacity];
+        int stored = 0;
+        boolean sorted = true;
+        int[] digits = new int[numOtherOnly];
+        for (int i = 0; i < driver.rows.length; i++) {
+            // the first joint row and the first row of the other factor that match the stored row
+            int row = driver.rows[i];
+            int jointRow = 0;
+            int otherRow = 0;
+            for (int j = 0; j < cardinalities.length; j++) {
+                if (driverStrides[j] != 0) {
+                    int outcomeIndex = row / driverStrides[j] % cardinalities[j];
+                    jointRow += outcomeIndex * jointStrides[j];
+                    otherRow += outcomeIndex * otherStrides[j];
+                }
+            }
+
+            // walk the variables that only the other factor has with an odometer
+            double driverValue = driver.values[i];
+            while (true) {
+                double otherValue = other.value(otherRow);
+                if (otherValue != zero) {
+                    if (stored == newRows.length) {
+                        newRows = Arrays.copyOf(newRows, (int) Math.min(size, 2L * stored));
+                        newValues = Arrays.copyOf(newValues, newRows.length);
+                    }
+                    sorted &= stored == 0 || jointRow > newRows[stored - 1];
+                    newRows[stored] = jointRow;
+                    newValues[stored++] = f1.logSpace ? driverValue + otherValue : driverValue * otherValue;
+                }
+                int j = numOtherOnly - 1;
+                for (; j >= 0; j--) {
+                    int variable = otherOnly[j];
+                    jointRow += jointStrides[variable];
+                    otherRow += otherStrides[variable];
+                    if (++digits[j] < cardinalities[variable]) {
+                        break;
+                    }
+                    jointRow -= jointStrides[variable] * cardinalities[variable];
+                    otherRow -= otherStrides[variable] * cardinalities[variable];
+                    digits[j] = 0;
+                }
+                if (j < 0) {
+                    break;
+                }
+            }
+        }
+        counter.incrementProductCounter(stored);
+        counter.recordFactorSize(stored);
+
+        if (!sorted) { // the joint rows follow the stored rows of the first factor, not of the second
+            long[] keys = new long[stored];
+            for (int i = 0; i < stored; i++) {
+                keys[i] = (long) newRows[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedRows = new int[stored];
+            double[] sortedValues = new double[stored];
+            for (int i = 0; i < stored; i++) {
+                sortedRows[i] = (int) (keys[i] >>> 32);
+                sortedValues[i] = newValues[(int) keys[i]];
+            }
+            newRows = sortedRows;
+            newValues = sortedValues;
+        }
+        return withLayout(jointVariables, cardinalities, newRows, newValues, stored, f1.logSpace);
+    }
+
+    /**
+     * Fills {@code out} with the product of the matching rows of {@code a} and {@code b}, or their sum in log space.
+     * The rows of {@code out} are walked in order with an odometer over the joint variables, moving the row of each input
+     * by its stride (0 if the input does not have the variable), so no objects are created per row.
+     * <p>
+     * The last joint variables that each input either has last, in the same order, or does not have at all, make runs of
+     * rows that are contiguous in both inputs, or contiguous in one and fixed in the other. These runs are multiplied by
+     * the {@link FactorKernels}. Otherwise the last variable cycles fastest and gets its own tight loop.
+     *
+     * @param a             The table of the first factor.
+     * @param aStrides      The stride in {@code a} of each joint variable.
+     * @param b             The table of the second factor.
+     * @param bStrides      The stride in {@code b} of each joint variable.
+     * @param cardinalities The number of outcomes of each joint variable.
+     * @param out           The joint table.
+     * @param logSpace      Whether the tables hold logarithms.
+     */
+    private static void joinKernel(double[] a, int[] aStrides, double[] b, int[] bStrides, int[] cardinalities, double[] out, boolean logSpace) {
+        int last = cardinalities.length - 1;
+        if (last < 0) { // both factors have no variables
+            out[0] = logSpace ? a[0] + b[0] : a[0] * b[0];
+            return;
+        }
+
+        int runStart = runStart(aStrides, bStrides, cardinalities);
+        int outer = runStart == -1 ? last : runStart; // the variables of the odometer
+        int runLength = 1;
+        for (int j = outer; j <= last; j++) {
+            runLength *= cardinalities[j];
+        }
+        int aInner = aStrides[last];
+        int bInner = bStrides[last];
+        int[] digits = new int[outer];
+        int rowA = 0;
+        int rowB = 0;
+
+        for (int row = 0; row < out.length; row += runLength) {
+            if (runStart == -1) {
+                // the innermost variable: a contiguous run of the output
+                if (logSpace) {
+                    for (int k = 0, ia = rowA, ib = rowB; k < runLength; k++, ia += aInner, ib += bInner) {
+                        out[row + k] = a[ia] + b[ib];
+                    }
+                } else {
+                    for (int k = 0, ia = rowA, ib = rowB; k < runLength; k++, ia += aInner, ib += bInner) {
+                        out[row + k] = a[ia] * b[ib];
+                    }
+                }
+            } else if (aInner == 0) {
+                if (logSpace) {
+                    KERNELS.add(a[rowA], b, rowB, out, row, runLength);
+                } else {
+                    KERNELS.multiply(a[rowA], b, rowB, out, row, runLength);
+                }
+            } else if (bInner == 0) {
+                if (logSpace) {
+                    KERNELS.add(b[rowB], a, rowA, out, row, runLength);
+                } else {
+                    KERNELS.multiply(b[rowB], a, rowA, out, row, runLength);
+                }
+            } else if (logSpace) {
+                KERNELS.add(a, rowA, b, rowB, out, row, runLength);
+            } else {
+                KERNELS.multiply(a, rowA, b, rowB, out, row, runLength);
+            }
+
+            // advance the odometer over the outer variables
+            for (int j = outer - 1; j >= 0; j--) {
+                rowA += aStrides[j];
+                rowB += bStrides[j];
+                if (++digits[j] < cardinalities[j]) {
+                    break;
+                }
+                rowA -= aStrides[j] * cardinalities[j];
+                rowB -= bStrides[j] * cardinalities[j];
+                digits[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the first of the last joint variables that each input either has last with contiguous strides, or does not
+     * have, or -1 if the last joint variable is not the last variable of an input that has it
+     */
+    private static int runStart(int[] aStrides, int[] bStrides, int[] cardinalities) {
+        int last = cardinalities.length - 1;
+        if (aStrides[last] > 1 || bStrides[last] > 1) {
+            return -1;
+        }
+        int aStride = aStrides[last];
+        int bStride = bStrides[last];
+        int start = last;
+        // extend the run while each input keeps its stride pattern: contiguous, or without the variables
+        while (start > 0 && aStrides[start - 1] == aStride * cardinalities[start] && bStrides[start - 1] == bStride * cardinalities[start]) {
+            start--;
+            aStride = aStrides[start];
+            bStride = bStrides[start];
+        }
+        return start;
+    }
+
+    /**
+     * Joins a list of factors into one. The resulting factor will have all variables from all factors.
+     *
+     * @param factors The list of factors to join.
+     * @return The resulting factor with all variables and their probabilities.
+     */
+    public static Factor join(List<Factor> factors) {
+        return join(factors, new Counter());
+    }
+
+    /**
+     * Joins a list of factors into one. The resulting factor will have all variables from all factors.
+     *
+     * @param factors The list of factors to join.
+     * @param counter The counter of the query, counts the products.
+     * @return The resulting factor with all variables and their probabilities.
+     */
+    public static Factor join(List<Factor> factors, Counter counter) {
+        if (factors.isEmpty()) {
+            throw new IllegalArgumentException("List of factors is empty.");
+        }
+
+        factors.sort((f1, f2) -> compareJoinOrder(f1.variables, f2.variables));
+
+        Factor result = factors.get(0);
+        for (int i = 1; i < factors.size(); i++) {
+            result = join(result, factors.get(i), counter);
+        }
+        return result;
+    }
+
+    /**
+     * The order in which {@link #join(List, Counter)} joins factors, given their variables:
+     * sort the factors by size if the size is the same, sort by the sum of the ASCII value of the variable names.
+     */
+    static int compareJoinOrder(List<Variable> variables1, List<Variable> variables2) {
+        long size1 = tableSize(variables1);
+        long size2 = tableSize(variables2);
+        if (size1 != size2) {
+            return Long.compare(size1, size2);
+        }
+        int sum1 = variables1.stream().mapToInt(v -> v.getName().chars().sum()).sum();
+        int sum2 = variables2.stream().mapToInt(v -> v.getName().chars().sum()).sum();
+        return Integer.compare(sum1, sum2);
+    }
+
+    /**
+     * @return the number of rows of a factor over the given variables, {@link Long#MAX_VALUE} if it overflows
+     */
+    static long tableSize(List<Variable> variables) {
+        long size = 1;
+        for (Variable variable : variables) {
+            size = saturatedMultiply(size, variable.getOutcomes().size());
+        }
+        return size;
+    }
+
+    /**
+     * @return the product of two non-negative sizes, {@link Long#MAX_VALUE} if it overflows
+     */
+    static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        return high == 0 && a * b >= 0 ? a * b : Long.MAX_VALUE;
+    }
+
+    /**
+     * Normalizes the factor by dividing each probability by the sum of all probabilities.
+     *
+     * @return A new factor with normalized probabilities.
+     */
+    public Factor normalize() {
+        return normalize(new Counter());
+    }
+
+    /**
+     * Normalizes the factor by dividing each probability by the sum of all probabilities.
+     *
+     * @param counter The counter of the query, counts the sums.
+     * @return A new factor with normalized probabilities.
+     */
+    public Factor normalize(Counter counter) {
+        if (values.length == 0) {
+            // a sparse factor with no stored rows: like a table of zeros, every normalized row is 0/0
+            double[] undefined = new double[size];
+            Arrays.fill(undefined, Double.NaN);
+            return new Factor(new ArrayList<>(variables), cardinalities, null, undefined, logSpace, sparseAllowed);
+        }
+        if (logSpace) {
+            return normalizeLogSpace(counter);
+        }
+        // sum up all probabilities
+        double sum = KERNELS.sum(values, 0, values.length);
+        counter.incrementSumCounter(values.length - 1);
+        counter.recordFactorSize(values.length);
+
+        // create a new factor with the normalized probabilities
+        double[] normalizedValues = new double[values.length];
+        KERNELS.divide(values, sum, normalizedValues);
+
+        return new Factor(new ArrayList<>(variables), cardinalities, rows, normalizedValues, false, sparseAllowed);
+    }
+
+    /**
+     * Normalizes a factor in log space by subtracting the log-sum-exp of the table.
+     */
+    private Factor normalizeLogSpace(Counter counter) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        double sum = 0.0;
+        for (double value : values) {
+            sum += Math.exp(value - max);
+        }
+        double logSum = max + Math.log(sum);
+        counter.incrementSumCounter(values.length - 1);
+        counter.recordFactorSize(values.length);
+
+        double[] normalizedValues = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            normalizedValues[i] = values[i] - logSum;
+        }
+        return new Factor(new ArrayList<>(variables), cardinalities, rows, normalizedValues, true, sparseAllowed);
+    }
+
+    /**
+     * @return the number of rows of the table, stored or not
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of stored rows: all of them, or the non-zero rows of a sparse factor
+     */
+    public int getStoredSize() {
+        return values.length;
+    }
+
+    public List<Variable> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the table in row-major order (the last variable changes fastest), must not be modified (a copy for a
+     * sparse factor)
+     */
+    double[] getValues() {
+        if (rows == null) {
+            return values;
+        }
+        double[] table = new double[size];
+        for (int row = 0; row < size; row++) {
+            table[row] = value(row);
+        }
+        return table;
+    }
+
+    /**
+     * Returns a string representation of the factor's CPT.
+     *
+     * @return The CPT as a formatted string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Factor CPT:\n");
+
+        // Header
+        for (Variable variable : variables) {
+            sb.append(String.format("%-10s | ", variable.getName()));
+        }
+        sb.append("Probability\n");
+
+        // Separator line
+        for (int i = 0; i < variables.size(); i++) {
+            sb.append("-----------|-");
+        }
+        sb.append("-----------\n");
+
+
+        for (int row = 0; row < size; row++) {
+            for (int i = 0; i < variables.size(); i++) {
+                int outcomeIndex = (row / strides[i]) % cardinalities[i];
+                sb.append(String.format("%-10s | ", variables.get(i).getOutcomes().get(outcomeIndex)));
+            }
+            sb.append(String.format("%.7f%n", logSpace ? Math.exp(value(row)) : value(row)));
+        }
+        return sb.toString();
+    }
+
+}
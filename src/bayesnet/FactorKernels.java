@@ -0,0 +1,133 @@
+package bayesnet;
+
+/**
+ * The inner loops of the {@link Factor} operations, over contiguous runs of rows: the products (or sums of logarithms)
+ * of {@code join}, the sums of {@code eliminate} and the sum and divisions of {@code normalize}.
+ * <p>
+ * {@link #INSTANCE} is chosen once, when the class is loaded: the SIMD loops of {@code VectorFactorKernels}, written with
+ * the incubating Vector API, if the JVM was started with {@code --add-modules jdk.incubator.vector}, and the scalar loops
+ * otherwise, or if the system property {@code bayesnet.vector} is {@code false}. The vector loops add the rows of a sum
+ * in another order, so their answers only match the scalar ones within rounding.
+ */
+abstract class FactorKernels {
+    static final FactorKernels INSTANCE = select();
+
+    private static FactorKernels select() {
+        if (!Boolean.parseBoolean(System.getProperty("bayesnet.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new Scalar();
+        }
+        try {
+            // loaded by name, so that the scalar loops do not need the module
+            return (FactorKernels) Class.forName("bayesnet.VectorFactorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new Scalar();
+        }
+    }
+
+    /**
+     * {@code out[outFrom + i] = a[aFrom + i] * b[bFrom + i]} for {@code i < length}
+     */
+    abstract void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length);
+
+    /**
+     * {@code out[outFrom + i] = a * b[bFrom + i]} for {@code i < length}
+     */
+    abstract void multiply(double a, double[] b, int bFrom, double[] out, int outFrom, int length);
+
+    /**
+     * {@code out[outFrom + i] = a[aFrom + i] + b[bFrom + i]} for {@code i < length}
+     */
+    abstract void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length);
+
+    /**
+     * {@code out[outFrom + i] = a + b[bFrom + i]} for {@code i < length}
+     */
+    abstract void add(double a, double[] b, int bFrom, double[] out, int outFrom, int length);
+
+    /**
+     * {@code target[targetFrom + i] += source[sourceFrom + i]} for {@code i < length}
+     */
+    abstract void addTo(double[] source, int sourceFrom, double[] target, int targetFrom, int length);
+
+    /**
+     * @return the sum of {@code values[from..to)}
+     */
+    abstract double sum(double[] values, int from, int to);
+
+    /**
+     * {@code out[i] = values[i] / divisor} for every row
+     */
+    abstract void divide(double[] values, double divisor, double[] out);
+
+    /**
+     * @return "scalar", or the shape of the vectors
+     */
+    abstract String name();
+
+    @Override
+    public String toString() {
+        return "FactorKernels{" + name() + '}';
+    }
+
+    /**
+     * The plain loops, which add the rows in order.
+     */
+    static final class Scalar extends FactorKernels {
+        @Override
+        void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = a[aFrom + i] * b[bFrom + i];
+            }
+        }
+
+        @Override
+        void multiply(double a, double[] b, int bFrom, double[] out, int outFrom, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = a * b[bFrom + i];
+            }
+        }
+
+        @Override
+        void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = a[aFrom + i] + b[bFrom + i];
+            }
+        }
+
+        @Override
+        void add(double a, double[] b, int bFrom, double[] out, int outFrom, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = a + b[bFrom + i];
+            }
+        }
+
+        @Override
+        void addTo(double[] source, int sourceFrom, double[] target, int targetFrom, int length) {
+            for (int i = 0; i < length; i++) {
+                target[targetFrom + i] += source[sourceFrom + i];
+            }
+        }
+
+        @Override
+        double sum(double[] values, int from, int to) {
+            double sum = 0.0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        @Override
+        void divide(double[] values, double divisor, double[] out) {
+            for (int i = 0; i < values.length; i++) {
+                out[i] = values[i] / divisor;
+            }
+        }
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+    }
+}
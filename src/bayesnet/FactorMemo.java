@@ -0,0 +1,137 @@
+package bayesnet;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The factors computed while running elimination plans, keyed by how they were computed (their provenance), so that an
+ * {@link InferenceSession} can reuse them in its next queries.
+ * <ul>
+ *     <li>An initial factor is keyed by its CPT and the evidence on the variables of that CPT.</li>
+ *     <li>The result of an elimination step is keyed by the eliminated variable and the factors it joined.</li>
+ * </ul>
+ * So a factor is reused exactly when a later plan would compute it from the same inputs, whatever the evidence on the
+ * rest of the network, and a factor is never stale: evidence that changes one of its inputs changes its key. The least
+ * recently used factors are evicted beyond the capacity. A memo is not thread-safe.
+ */
+class FactorMemo {
+    /**
+     * A memoized factor, with the id its dependents use in their keys. Ids are never reused, so a key never refers to an
+     * evicted factor that was recomputed differently.
+     */
+    static class Entry {
+        final long id;
+        final Factor factor;
+
+        Entry(long id, Factor factor) {
+            this.id = id;
+            this.factor = factor;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private long nextId;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity the maximal number of factors to keep
+     */
+    FactorMemo(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param source           the variable of the CPT
+     * @param evidenceOutcomes the evidence outcomes
+     * @param logSpace         whether to take the CPT in log space
+     * @param sparse           whether the factors may be sparse
+     * @return the CPT of the variable after setting the evidence
+     */
+    Entry setEvidence(Variable source, List<VariableOutcome> evidenceOutcomes, boolean logSpace, boolean sparse) {
+        StringBuilder key = new StringBuilder(logSpace ? "log " : "").append(sparse ? "sparse " : "").append(source.getName()).append('|');
+        for (Variable variable : source.getFactor().getVariables()) {
+            for (VariableOutcome vo : evidenceOutcomes) {
+                if (vo.variable == variable) {
+                    key.append(variable.getName()).append('=').append(vo.outcome).append(',');
+                }
+            }
+        }
+        Entry entry = lookup(key.toString());
+        if (entry == null) {
+            Factor cpt = source.getFactor();
+            entry = store(key.toString(), cpt.forQuery(logSpace, sparse).setEvidences(evidenceOutcomes));
+        }
+        return entry;
+    }
+
+    /**
+     * Joins the factors in the given slots, in the given order, and eliminates the variable (see {@link QueryPlan.Step}).
+     * Only the operations of a factor that is not memoized yet are counted.
+     *
+     * @param variable  the variable to eliminate
+     * @param slots     the factor slots of the plan
+     * @param joinOrder the slots to join
+     * @param counter   the counter of the query
+     * @return the joined factor, without the variable
+     */
+    Entry eliminate(Variable variable, Entry[] slots, int[] joinOrder, Counter counter) {
+        StringBuilder key = new StringBuilder(variable.getName()).append(':');
+        for (int slot : joinOrder) {
+            key.append(slots[slot].id).append(',');
+        }
+        Entry entry = lookup(key.toString());
+        if (entry == null) {
+            Factor joined = slots[joinOrder[0]].factor;
+            for (int i = 1; i < joinOrder.length; i++) {
+                joined = Factor.join(joined, slots[joinOrder[i]].factor, counter);
+            }
+            entry = store(key.toString(), joined.eliminate(variable, counter));
+        }
+        return entry;
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    private Entry store(String key, Factor factor) {
+        Entry entry = new Entry(nextId++, factor);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Removes all factors, e.g. after the network changed. The metrics are kept.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,299 @@
+package bayesnet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Approximate inference by Gibbs sampling (query method 'G'), for evidence that is too unlikely for
+ * {@link LikelihoodWeighting}: the evidence is clamped, so every sample agrees with it.
+ * <p>
+ * A sweep resamples every variable that is not evidence, in topological order, from its distribution given its Markov
+ * blanket:
+ * <pre>
+ * P(x | blanket) ~ P(x | parents(x)) * product over the children c of P(c | parents(c))
+ * </pre>
+ * which only reads the CPT rows of the variable and of its children, through the arrays of the {@link CompiledNetwork}.
+ * A sweep does not allocate.
+ * <p>
+ * Several chains run in parallel, each from its own random stream and its own random start (a forward sample with the
+ * evidence clamped). After the burn-in, each round adds a batch of samples to every chain. The estimate is the fraction
+ * of the samples that match the query, and after every round:
+ * <ul>
+ *     <li>the standard error is estimated from the means of the batches (batch means), since consecutive samples are
+ *     correlated;</li>
+ *     <li>the chains are checked for convergence with the split R-hat of Gelman and Rubin, over the first and the second
+ *     half of every chain.</li>
+ * </ul>
+ * Sampling stops when the rule of {@link SamplingOptions} holds (enough samples, enough samples that match the query and
+ * that do not, and a narrow enough confidence interval) and R-hat is at most {@value #MAX_R_HAT}, or after
+ * {@link SamplingOptions#getMaxSamples()} samples. When no chain has seen the query both match and not match, R-hat is
+ * NaN: the chains have not explored the outcomes, so their agreement says nothing. A chain that reaches a state of probability 0 given its blanket (with
+ * deterministic CPTs) keeps the current outcome of the variable.
+ * <p>
+ * The counter counts the products and the sums of the blanket distributions.
+ */
+class GibbsSampler {
+    static final char METHOD = 'G';
+    static final double MAX_R_HAT = 1.05;
+
+    private final CompiledNetwork network;
+
+    GibbsSampler(CompiledNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Estimates the probability of the query outcomes given the evidence.
+     *
+     * @param queryOutcomes    the query outcomes
+     * @param evidenceOutcomes the evidence outcomes
+     * @param options          the sampling options
+     * @param counter          the counter of the query
+     * @return the estimate, its standard error, the number of samples and R-hat
+     */
+    QueryResult estimate(List<VariableOutcome> queryOutcomes, List<VariableOutcome> evidenceOutcomes, SamplingOptions options, Counter counter) {
+        int[] evidence = new int[network.size()]; // the observed outcome index of each variable, -1 if not observed
+        Arrays.fill(evidence, -1);
+        for (VariableOutcome vo : evidenceOutcomes) {
+            evidence[network.indexOf(vo.variable)] = vo.outcomeIndex;
+        }
+        int[] queryVars = new int[queryOutcomes.size()];
+        int[] queryValues = new int[queryOutcomes.size()];
+        for (int i = 0; i < queryVars.length; i++) {
+            queryVars[i] = network.indexOf(queryOutcomes.get(i).variable);
+            queryValues[i] = queryOutcomes.get(i).outcomeIndex;
+        }
+        int[] freeVars = new int[network.size() - (int) Arrays.stream(evidence).filter(value -> value != -1).count()];
+        for (int v = 0, i = 0; v < network.size(); v++) {
+            if (evidence[v] == -1) {
+                freeVars[i++] = v;
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(options.getSeed());
+        Chain[] chains = new Chain[options.getChains()];
+        for (int i = 0; i < chains.length; i++) {
+            chains[i] = new Chain(random.split(), evidence, freeVars, queryVars, queryValues);
+        }
+        runInParallel(chains, chain -> chain.burnIn(options.getBurnIn()));
+
+        long samples = 0;
+        double estimate = Double.NaN;
+        double standardError = Double.NaN;
+        double rHat = Double.NaN;
+        while (samples < options.getMaxSamples()) {
+            runInParallel(chains, chain -> chain.drawBatch(options.getBatchSize(), options.getThinning()));
+            samples += (long) chains.length * options.getBatchSize();
+
+            long matches = 0;
+            for (Chain chain : chains) {
+                matches += chain.matches;
+            }
+            estimate = (double) matches / samples;
+            standardError = options.withWilsonFloor(batchMeansStandardError(chains, options.getBatchSize(), estimate), estimate, samples);
+            rHat = splitRHat(chains, options.getBatchSize());
+            if (options.converged(samples, matches, samples - matches, standardError) && rHat <= MAX_R_HAT) {
+                break;
+            }
+        }
+
+        for (Chain chain : chains) {
+            counter.incrementSumCounter(chain.sums);
+            counter.incrementProductCounter(chain.products);
+        }
+        return new QueryResult(estimate, standardError, samples, rHat, counter);
+    }
+
+    private interface ChainTask {
+        void run(Chain chain);
+    }
+
+    private static void runInParallel(Chain[] chains, ChainTask task) {
+        if (chains.length == 1) {
+            task.run(chains[0]);
+        } else {
+            Arrays.stream(chains).parallel().forEach(task::run);
+        }
+    }
+
+    /**
+     * @return the standard error of the estimate from the means of all the batches, NaN with fewer than 2 batches
+     */
+    private static double batchMeansStandardError(Chain[] chains, int batchSize, double estimate) {
+        int numBatches = 0;
+        double squares = 0;
+        for (Chain chain : chains) {
+            for (int b = 0; b < chain.numBatches; b++) {
+                double deviation = (double) chain.batchMatches[b] / batchSize - estimate;
+                squares += deviation * deviation;
+            }
+            numBatches += chain.numBatches;
+        }
+        if (numBatches < 2) {
+            return Double.NaN;
+        }
+        return Math.sqrt(squares / (numBatches - 1) / numBatches);
+    }
+
+    /**
+     * Computes the split R-hat of the query indicator: every chain is split in two halves, and the variance between the
+     * halves is compared with the variance within them. Values close to 1 mean the chains agree.
+     *
+     * @return R-hat, NaN before every chain has 2 batches or if the indicator is constant within every half
+     */
+    private static double splitRHat(Chain[] chains, int batchSize) {
+        int halfBatches = chains[0].numBatches / 2;
+        if (halfBatches == 0) {
+            return Double.NaN;
+        }
+        long n = (long) halfBatches * batchSize; // the length of a half
+        int numSequences = 2 * chains.length;
+        double[] means = new double[numSequences];
+        double within = 0;
+        for (int c = 0; c < chains.length; c++) {
+            Chain chain = chains[c];
+            for (int half = 0; half < 2; half++) {
+                int from = half == 0 ? 0 : chain.numBatches - halfBatches;
+                long matches = 0;
+                for (int b = from; b < from + halfBatches; b++) {
+                    matches += chain.batchMatches[b];
+                }
+                double mean = (double) matches / n;
+                means[2 * c + half] = mean;
+                within += n * mean * (1 - mean) / (n - 1); // the sample variance of the 0/1 indicator
+            }
+        }
+        within /= numSequences;
+
+        double grandMean = Arrays.stream(means).sum() / numSequences;
+        double between = 0;
+        for (double mean : means) {
+            between += (mean - grandMean) * (mean - grandMean);
+        }
+        between *= (double) n / (numSequences - 1);
+
+        if (within == 0) {
+            return Double.NaN; // not converged
+        }
+        double pooled = (n - 1) * within / n + between / n;
+        return Math.sqrt(pooled / within);
+    }
+
+    /**
+     * One Markov chain, with its state and the number of matching samples of each of its batches.
+     */
+    private class Chain {
+        private final SplittableRandom random;
+        private final int[] freeVars;
+        private final int[] queryVars;
+        private final int[] queryValues;
+        private final int[] assignment;
+        private final double[] weights; // the blanket distribution of the variable being resampled
+
+        long[] batchMatches = new long[16];
+        int numBatches = 0;
+        long matches = 0;
+        long sums = 0;
+        long products = 0;
+
+        Chain(SplittableRandom random, int[] evidence, int[] freeVars, int[] queryVars, int[] queryValues) {
+            this.random = random;
+            this.freeVars = freeVars;
+            this.queryVars = queryVars;
+            this.queryValues = queryValues;
+            this.assignment = new int[network.size()];
+            this.weights = new double[Arrays.stream(network.cardinalities).max().orElse(0)];
+
+            // start from a forward sample, with the evidence clamped
+            for (int v = 0; v < assignment.length; v++) {
+                if (evidence[v] != -1) {
+                    assignment[v] = evidence[v];
+                } else {
+                    int offset = network.rowOffset(v, assignment);
+                    System.arraycopy(network.cpts[v], offset, weights, 0, network.cardinalities[v]);
+                    assignment[v] = draw(network.cardinalities[v], 1.0);
+                }
+            }
+        }
+
+        void burnIn(int sweeps) {
+            for (int i = 0; i < sweeps; i++) {
+                sweep();
+            }
+        }
+
+        void drawBatch(int batchSize, int thinning) {
+            long batch = 0;
+            for (int s = 0; s < batchSize; s++) {
+                for (int i = 0; i < thinning; i++) {
+                    sweep();
+                }
+                boolean match = true;
+                for (int q = 0; q < queryVars.length && match; q++) {
+                    match = assignment[queryVars[q]] == queryValues[q];
+                }
+                if (match) {
+                    batch++;
+                }
+            }
+            if (numBatches == batchMatches.length) {
+                batchMatches = Arrays.copyOf(batchMatches, 2 * numBatches);
+            }
+            batchMatches[numBatches++] = batch;
+            matches += batch;
+        }
+
+        private void sweep() {
+            for (int v : freeVars) {
+                resample(v);
+            }
+        }
+
+        /**
+         * Draws the variable from its distribution given its Markov blanket.
+         */
+        private void resample(int v) {
+            int cardinality = network.cardinalities[v];
+            System.arraycopy(network.cpts[v], network.rowOffset(v, assignment), weights, 0, cardinality);
+
+            // the row of each child for the current outcome of v, then move along the stride of v for the other outcomes
+            int current = assignment[v];
+            int[] children = network.children[v];
+            int[] strides = network.childStrides[v];
+            for (int j = 0; j < children.length; j++) {
+                int child = children[j];
+                double[] childCpt = network.cpts[child];
+                int stride = strides[j];
+                int entry = network.rowOffset(child, assignment) + assignment[child] - current * stride;
+                for (int k = 0; k < cardinality; k++) {
+                    weights[k] *= childCpt[entry + k * stride];
+                }
+            }
+            products += (long) children.length * cardinality;
+
+            double total = 0;
+            for (int k = 0; k < cardinality; k++) {
+                total += weights[k];
+            }
+            sums += cardinality - 1;
+            if (total > 0) {
+                assignment[v] = draw(cardinality, total);
+            }
+        }
+
+        /**
+         * Draws an outcome with probability proportional to the weights.
+         */
+        private int draw(int cardinality, double total) {
+            double u = random.nextDouble() * total;
+            for (int k = 0; k < cardinality - 1; k++) {
+                u -= weights[k];
+                if (u < 0) {
+                    return k;
+                }
+            }
+            return cardinality - 1;
+        }
+    }
+}
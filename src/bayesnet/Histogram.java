@@ -0,0 +1,163 @@
+package bayesnet;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative longs in the manner of HdrHistogram: the values below 128 have a bucket each, and every
+ * larger power of two is split into 64 buckets, so a percentile is reported within 1/64 (1.6%) of the recorded value,
+ * from 1 to {@link Long#MAX_VALUE}, in a fixed array of 3712 counts. Recording is lock-free and allocates nothing, so
+ * any number of threads can record into one histogram.
+ * <p>
+ * The statistics read while other threads record may miss the values being recorded, but never count one twice.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, not negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the bucket of a value
+     */
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the smallest value of a bucket
+     */
+    static long lowestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @return the largest value of a bucket
+     */
+    static long highestValue(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the mean of the values, or NaN if there are none
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? Double.NaN : (double) getSum() / count;
+    }
+
+    /**
+     * @return the smallest value, or 0 if there are none
+     */
+    public long getMin() {
+        long min = this.min.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * @return the largest value, or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage of the values fall: the largest value of the bucket of that
+     * rank, but never more than the largest recorded value.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value, or 0 if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100: " + percentile);
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Copies the histogram, and optionally empties it. A value recorded during the copy is either in the copy or left in
+     * this histogram, so successive copies with reset add up to every recorded value.
+     *
+     * @param reset whether to empty this histogram
+     * @return the copy
+     */
+    public Histogram snapshot(boolean reset) {
+        Histogram copy = new Histogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            if (bucket != 0) {
+                copy.counts.set(i, bucket);
+            }
+        }
+        copy.count.add(reset ? count.sumThenReset() : count.sum());
+        copy.sum.add(reset ? sum.sumThenReset() : sum.sum());
+        copy.min.accumulate(reset ? min.getThenReset() : min.get());
+        copy.max.accumulate(reset ? max.getThenReset() : max.get());
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
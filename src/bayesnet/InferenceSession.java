@@ -0,0 +1,157 @@
+package bayesnet;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A session of queries against one {@link BayesNet} while evidence arrives one variable at a time:
+ * <pre>
+ * InferenceSession session = new InferenceSession(bayesNet);
+ * session.addEvidence("J", "T");
+ * session.query("P(B=T),3"); // P(B=T|J=T)
+ * session.addEvidence("M", "T");
+ * session.query("P(B=T),3"); // P(B=T|J=T,M=T)
+ * session.retractEvidence("J");
+ * </pre>
+ * With methods 2 and 3 the session keeps the intermediate factors of the elimination in a {@link FactorMemo}, keyed by
+ * the factors and evidence they were computed from. A query after an update only recomputes the factors that depend on
+ * the changed evidence, and retracting evidence goes back to the factors of the earlier queries. The sum and product
+ * counts of a query are the operations it actually ran. The other methods are answered by the network as usual.
+ * <p>
+ * The memo is dropped when the network changes. A session is not thread-safe, but several sessions can share a network.
+ */
+public class InferenceSession {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final BayesNet bayesNet;
+    private final Map<String, String> evidence = new LinkedHashMap<>(); // in the order it was added
+    private final FactorMemo memo;
+    private long networkVersion;
+
+    public InferenceSession(BayesNet bayesNet) {
+        this(bayesNet, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param bayesNet the network to query
+     * @param capacity the number of intermediate factors to keep
+     */
+    public InferenceSession(BayesNet bayesNet, int capacity) {
+        this.bayesNet = bayesNet;
+        this.memo = new FactorMemo(capacity);
+        this.networkVersion = bayesNet.getVersion();
+    }
+
+    /**
+     * Observes a variable, or changes its observed outcome.
+     *
+     * @param variableName the name of the variable
+     * @param outcome      the observed outcome
+     * @throws IllegalArgumentException if the variable is not in the network or the outcome is not one of its outcomes
+     */
+    public void addEvidence(String variableName, String outcome) {
+        Variable variable = bayesNet.variables.get(variableName);
+        if (variable == null) {
+            throw new IllegalArgumentException("Variable not found: " + variableName);
+        }
+        new VariableOutcome(variable, outcome); // checks the outcome
+        evidence.put(variableName, outcome);
+    }
+
+    /**
+     * Removes the observation of a variable.
+     *
+     * @param variableName the name of the variable
+     * @return true if the variable was observed
+     */
+    public boolean retractEvidence(String variableName) {
+        return evidence.remove(variableName) != null;
+    }
+
+    public void clearEvidence() {
+        evidence.clear();
+    }
+
+    /**
+     * @return the observed outcome of each observed variable, in the order they were observed
+     */
+    public Map<String, String> getEvidence() {
+        return Collections.unmodifiableMap(evidence);
+    }
+
+    /**
+     * Answers a query given the evidence of the session.
+     *
+     * @param query the query "P(X=T,Y=F),n", or "P(X=T|Z=F),n" to add evidence for this query only, where n is the method
+     *              (see {@link BayesNet#answerQuery(String)}). The evidence of the query overrides the session's
+     *              evidence on the same variable, and the session's evidence on the query variables is ignored.
+     * @return the probability and the number of sums and products used to calculate it
+     */
+    public QueryResult query(String query) {
+        int close = query.length() - 3;
+        if (!query.startsWith("P(") || close < 2 || query.charAt(close) != ')' || query.charAt(close + 1) != ',') {
+            throw new IllegalArgumentException("Expected a query of the form P(X=T|Z=F),n: " + query);
+        }
+        long version = bayesNet.getVersion();
+        if (version != networkVersion) {
+            memo.clear();
+            networkVersion = version;
+        }
+
+        // the evidence of the query overrides the session's, and the session's evidence on a query variable is left out
+        int bar = query.indexOf('|');
+        String head = query.substring(0, bar == -1 ? close : bar);
+        Map<String, String> merged = new LinkedHashMap<>();
+        if (bar != -1) {
+            putAssignments(merged, query.substring(bar + 1, close), query);
+        }
+        Map<String, String> queried = new LinkedHashMap<>();
+        putAssignments(queried, head.substring(2), query);
+        for (Map.Entry<String, String> observation : evidence.entrySet()) {
+            if (!queried.containsKey(observation.getKey())) {
+                merged.putIfAbsent(observation.getKey(), observation.getValue());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(head);
+        char separator = '|';
+        for (Map.Entry<String, String> observation : merged.entrySet()) {
+            sb.append(separator).append(observation.getKey()).append('=').append(observation.getValue());
+            separator = ',';
+        }
+        sb.append(query, close, query.length());
+        return bayesNet.answerQuery(sb.toString(), memo);
+    }
+
+    private static void putAssignments(Map<String, String> assignments, String list, String query) {
+        for (String assignment : list.split(",")) {
+            int equals = assignment.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Expected an assignment X=T in the query: " + query);
+            }
+            assignments.put(assignment.substring(0, equals).trim(), assignment.substring(equals + 1).trim());
+        }
+    }
+
+    /**
+     * @return the number of intermediate factors in the memo
+     */
+    public int getMemoSize() {
+        return memo.size();
+    }
+
+    /**
+     * @return the number of factors that were taken from the memo
+     */
+    public long getMemoHits() {
+        return memo.getHits();
+    }
+
+    /**
+     * @return the number of factors that had to be computed
+     */
+    public long getMemoMisses() {
+        return memo.getMisses();
+    }
+}
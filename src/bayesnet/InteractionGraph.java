@@ -0,0 +1,496 @@
+package bayesnet;
+
+import java.util.*;
+
+public class InteractionGraph {
+    private final Set<Variable> variables;
+    private final Map<Variable, Set<Variable>> variableToNeighborsMap;
+
+    public InteractionGraph(List<Factor> factors) {
+        this.variables = new HashSet<>();
+        this.variableToNeighborsMap = new HashMap<>();
+
+        for (Factor factor : factors) {
+            List<Variable> factorVariables = factor.getVariables();
+            for (Variable variable : factorVariables) {
+                if (!variableToNeighborsMap.containsKey(variable)) {
+                    variableToNeighborsMap.put(variable, new HashSet<>());
+                    variables.add(variable);
+                }
+                variableToNeighborsMap.get(variable).addAll(factorVariables);
+                variableToNeighborsMap.get(variable).remove(variable);
+            }
+        }
+    }
+
+    /**
+     * The greedy heuristics that choose the next variable to eliminate: the variable with the lowest score, the first one
+     * in the iteration order of the variables on a tie.
+     */
+    public enum Heuristic {
+        /**
+         * The number of neighbors.
+         */
+        MIN_DEGREE,
+        /**
+         * The number of fill-in edges, the missing edges between the neighbors.
+         */
+        MIN_FILL,
+        /**
+         * The fill-in edges weighted by the product of the domain sizes of their ends.
+         */
+        WEIGHTED_MIN_FILL,
+        /**
+         * The size of the factor of the elimination, the product of the domain sizes of the variable and its neighbors.
+         */
+        MIN_WEIGHT
+    }
+
+    // Minimum Degree heuristic
+    public List<Variable> minDegreeOrder(Set<Variable> variablesToEliminate) {
+        return eliminationOrder(Heuristic.MIN_DEGREE, variablesToEliminate);
+    }
+
+    // Minimum Fill heuristic
+    public List<Variable> minFillOrder(Set<Variable> variablesToEliminate) {
+        return eliminationOrder(Heuristic.MIN_FILL, variablesToEliminate);
+    }
+
+    /**
+     * Eliminates all the variables of the graph greedily, by the given heuristic, and returns the order of the variables
+     * to eliminate.
+     * <p>
+     * The scores are kept in an indexed priority queue. Eliminating a variable only changes the neighborhoods of its
+     * neighbors, and the fill-in edges it adds only change the fill of the variables next to them, so only the scores of
+     * these variables are recomputed, instead of rescanning every variable on every step.
+     *
+     * @param heuristic            the heuristic
+     * @param variablesToEliminate the variables to return, in the order they are eliminated
+     * @return the elimination order
+     */
+    public List<Variable> eliminationOrder(Heuristic heuristic, Set<Variable> variablesToEliminate) {
+        // the vertices are numbered in the iteration order of a copy of the variables, which breaks the ties
+        return eliminate(heuristic, new ArrayList<>(new HashSet<>(variables)), variablesToEliminate, false, Long.MAX_VALUE).order;
+    }
+
+    /**
+     * Eliminates only the given variables greedily, by the given heuristic, breaking the ties at random, and adds up the
+     * sizes of the factors of the elimination (see {@link #totalTableSize(List)}). The other variables stay in the graph.
+     *
+     * @param heuristic            the heuristic
+     * @param variablesToEliminate the variables to eliminate
+     * @param random               the random stream that numbers the vertices
+     * @param bound                the largest total table size of interest
+     * @return the order and its total table size, or null as soon as the total exceeds the bound
+     */
+    ScoredOrder randomizedOrder(Heuristic heuristic, Set<Variable> variablesToEliminate, SplittableRandom random, long bound) {
+        List<Variable> vertices = new ArrayList<>(variables);
+        for (int i = vertices.size() - 1; i > 0; i--) {
+            Collections.swap(vertices, i, random.nextInt(i + 1));
+        }
+        return eliminate(heuristic, vertices, variablesToEliminate, true, bound);
+    }
+
+    /**
+     * @param vertices        the variables of the graph, numbered by their position, which breaks the ties
+     * @param onlyToEliminate whether only the variables to eliminate are eliminated, otherwise all the variables are
+     *                        eliminated and the total table size is not computed
+     */
+    private ScoredOrder eliminate(Heuristic heuristic, List<Variable> vertices, Set<Variable> variablesToEliminate, boolean onlyToEliminate, long bound) {
+        EliminationGraph graph = new EliminationGraph(vertices);
+        IndexedMinHeap heap = new IndexedMinHeap(vertices.size());
+        for (int v = 0; v < vertices.size(); v++) {
+            if (!onlyToEliminate || variablesToEliminate.contains(vertices.get(v))) {
+                heap.insert(v, graph.score(heuristic, v));
+            }
+        }
+
+        List<Variable> eliminationOrder = new ArrayList<>();
+        long totalTableSize = 0;
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            if (variablesToEliminate.contains(vertices.get(v))) {
+                eliminationOrder.add(vertices.get(v));
+            }
+            if (onlyToEliminate) {
+                totalTableSize = saturatedAdd(totalTableSize, graph.score(Heuristic.MIN_WEIGHT, v));
+                if (totalTableSize > bound) {
+                    return null;
+                }
+            }
+            int[] affected = graph.eliminate(v, heuristic != Heuristic.MIN_DEGREE && heuristic != Heuristic.MIN_WEIGHT);
+            for (int w : affected) {
+                if (heap.contains(w)) {
+                    heap.update(w, graph.score(heuristic, w));
+                }
+            }
+        }
+        return new ScoredOrder(eliminationOrder, totalTableSize);
+    }
+
+    /**
+     * An elimination order with the total size of its factors.
+     */
+    static class ScoredOrder {
+        final List<Variable> order;
+        final long totalTableSize;
+
+        ScoredOrder(List<Variable> order, long totalTableSize) {
+            this.order = order;
+            this.totalTableSize = totalTableSize;
+        }
+    }
+
+    /**
+     * Describes the graph and the variables to eliminate: the names of the variables in order, each with a star if it is
+     * to be eliminated, and the names of its neighbors. Two graphs of the same network with the same signature give the
+     * same elimination orders.
+     *
+     * @param variablesToEliminate the variables to eliminate
+     * @return the signature
+     */
+    String signature(Set<Variable> variablesToEliminate) {
+        List<Variable> sorted = new ArrayList<>(variables);
+        sorted.sort(Comparator.comparing(Variable::getName));
+        StringBuilder signature = new StringBuilder();
+        for (Variable variable : sorted) {
+            List<String> neighbors = new ArrayList<>();
+            for (Variable neighbor : variableToNeighborsMap.get(variable)) {
+                neighbors.add(neighbor.getName());
+            }
+            Collections.sort(neighbors);
+            signature.append(variable.getName()).append(variablesToEliminate.contains(variable) ? "*" : "")
+                    .append(':').append(String.join(",", neighbors)).append(';');
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Predicts the largest factor of eliminating the variables in the given order: the product of the domain sizes of
+     * the largest clique of {@link #eliminationCliques(List)}, the factor that is joined before summing out its variable.
+     *
+     * @param order the elimination order
+     * @return the number of rows of the largest factor, {@link Long#MAX_VALUE} if it overflows, 1 for an empty order
+     */
+    public long largestFactorSize(List<Variable> order) {
+        long largest = 1;
+        for (Set<Variable> clique : eliminationCliques(order)) {
+            long size = 1;
+            for (Variable variable : clique) {
+                size = Factor.saturatedMultiply(size, variable.getOutcomes().size());
+            }
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /**
+     * Adds up the sizes of the factors of eliminating the variables in the given order: the product of the domain sizes
+     * of each clique of {@link #eliminationCliques(List)}. This estimates both the time and the memory of the elimination.
+     *
+     * @param order the elimination order
+     * @return the total number of rows, {@link Long#MAX_VALUE} if it overflows
+     */
+    public long totalTableSize(List<Variable> order) {
+        long total = 0;
+        for (Set<Variable> clique : eliminationCliques(order)) {
+            long size = 1;
+            for (Variable variable : clique) {
+                size = Factor.saturatedMultiply(size, variable.getOutcomes().size());
+            }
+            total = saturatedAdd(total, size);
+        }
+        return total;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * A copy of the graph, as adjacency lists of vertex numbers, that is changed by eliminating its vertices.
+     */
+    private class EliminationGraph {
+        private final int[][] neighbors;
+        private final int[] degrees;
+        private final int[] cardinalities;
+        private final int[] marks; // marks[v] == stamp marks a vertex for the current operation
+        private int stamp;
+
+        EliminationGraph(List<Variable> vertices) {
+            int n = vertices.size();
+            Map<Variable, Integer> numbers = new HashMap<>();
+            for (int v = 0; v < n; v++) {
+                numbers.put(vertices.get(v), v);
+            }
+            this.neighbors = new int[n][];
+            this.degrees = new int[n];
+            this.cardinalities = new int[n];
+            this.marks = new int[n];
+            for (int v = 0; v < n; v++) {
+                Set<Variable> variableNeighbors = variableToNeighborsMap.get(vertices.get(v));
+                neighbors[v] = new int[Math.max(4, variableNeighbors.size())];
+                for (Variable neighbor : variableNeighbors) {
+                    neighbors[v][degrees[v]++] = numbers.get(neighbor);
+                }
+                cardinalities[v] = vertices.get(v).getOutcomes().size();
+            }
+        }
+
+        /**
+         * @return the score of the vertex by the heuristic
+         */
+        long score(Heuristic heuristic, int v) {
+            switch (heuristic) {
+                case MIN_DEGREE:
+                    return degrees[v];
+                case MIN_WEIGHT:
+                    long weight = cardinalities[v];
+                    for (int i = 0; i < degrees[v]; i++) {
+                        weight = Factor.saturatedMultiply(weight, cardinalities[neighbors[v][i]]);
+                    }
+                    return weight;
+                case MIN_FILL:
+                case WEIGHTED_MIN_FILL:
+                    return fill(v, heuristic == Heuristic.WEIGHTED_MIN_FILL);
+                default:
+                    throw new IllegalArgumentException("Unknown heuristic: " + heuristic);
+            }
+        }
+
+        /**
+         * Counts the missing edges between the neighbors of the vertex: all the pairs of neighbors, minus the edges
+         * between them, each weighted by 1 or by the product of the cardinalities of its ends.
+         */
+        private long fill(int v, boolean weighted) {
+            stamp++;
+            long sum = 0; // of the weights of the neighbors
+            long squares = 0;
+            for (int i = 0; i < degrees[v]; i++) {
+                int a = neighbors[v][i];
+                marks[a] = stamp;
+                long w = weighted ? cardinalities[a] : 1;
+                sum += w;
+                squares += w * w;
+            }
+            long edges = 0; // twice the weight of the edges between the neighbors
+            for (int i = 0; i < degrees[v]; i++) {
+                int a = neighbors[v][i];
+                long adjacent = 0;
+                for (int j = 0; j < degrees[a]; j++) {
+                    int b = neighbors[a][j];
+                    if (marks[b] == stamp) {
+                        adjacent += weighted ? cardinalities[b] : 1;
+                    }
+                }
+                edges += adjacent * (weighted ? cardinalities[a] : 1);
+            }
+            return (sum * sum - squares - edges) / 2;
+        }
+
+        /**
+         * Eliminates the vertex: connects its neighbors, and removes it from their lists.
+         *
+         * @param v                  the vertex
+         * @param includeFillNeighbors whether the neighbors of the ends of the fill-in edges are affected too
+         * @return the vertices whose scores may have changed
+         */
+        int[] eliminate(int v, boolean includeFillNeighbors) {
+            int[] vNeighbors = Arrays.copyOf(neighbors[v], degrees[v]);
+            List<Integer> filled = new ArrayList<>(); // the neighbors that got a fill-in edge
+            for (int a : vNeighbors) {
+                remove(a, v);
+            }
+            for (int a : vNeighbors) {
+                stamp++;
+                for (int j = 0; j < degrees[a]; j++) {
+                    marks[neighbors[a][j]] = stamp;
+                }
+                boolean gotEdge = false;
+                for (int b : vNeighbors) {
+                    if (b != a && marks[b] != stamp) {
+                        add(a, b);
+                        add(b, a);
+                        gotEdge = true;
+                    }
+                }
+                if (gotEdge) {
+                    filled.add(a);
+                }
+            }
+            degrees[v] = 0;
+
+            stamp++;
+            marks[v] = stamp; // eliminated, not affected
+            int[] affected = new int[vNeighbors.length];
+            int count = 0;
+            for (int a : vNeighbors) {
+                marks[a] = stamp;
+                affected[count++] = a;
+            }
+            if (includeFillNeighbors) {
+                for (int a : filled) {
+                    for (int j = 0; j < degrees[a]; j++) {
+                        int b = neighbors[a][j];
+                        if (marks[b] != stamp) {
+                            marks[b] = stamp;
+                            if (count == affected.length) {
+                                affected = Arrays.copyOf(affected, 2 * count);
+                            }
+                            affected[count++] = b;
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(affected, count);
+        }
+
+        private void add(int v, int neighbor) {
+            if (degrees[v] == neighbors[v].length) {
+                neighbors[v] = Arrays.copyOf(neighbors[v], 2 * degrees[v]);
+            }
+            neighbors[v][degrees[v]++] = neighbor;
+        }
+
+        private void remove(int v, int neighbor) {
+            for (int i = 0; i < degrees[v]; i++) {
+                if (neighbors[v][i] == neighbor) {
+                    neighbors[v][i] = neighbors[v][--degrees[v]];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A binary min-heap of the vertices by score, then by vertex number, that knows where each vertex is so its score
+     * can be changed in place.
+     */
+    private static class IndexedMinHeap {
+        private final int[] heap;
+        private final int[] positions; // the position of each vertex in the heap, -1 if not in it
+        private final long[] scores;
+        private int size;
+
+        IndexedMinHeap(int capacity) {
+            this.heap = new int[capacity];
+            this.positions = new int[capacity];
+            this.scores = new long[capacity];
+            Arrays.fill(positions, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int v) {
+            return positions[v] != -1;
+        }
+
+        void insert(int v, long score) {
+            scores[v] = score;
+            heap[size] = v;
+            positions[v] = size;
+            siftUp(size++);
+        }
+
+        int poll() {
+            int min = heap[0];
+            positions[min] = -1;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                siftDown(0);
+            }
+            return min;
+        }
+
+        /**
+         * Changes the score of a vertex that is in the heap.
+         */
+        void update(int v, long score) {
+            long old = scores[v];
+            scores[v] = score;
+            if (score < old) {
+                siftUp(positions[v]);
+            } else if (score > old) {
+                siftDown(positions[v]);
+            }
+        }
+
+        private boolean less(int v, int w) {
+            return scores[v] < scores[w] || (scores[v] == scores[w] && v < w);
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!less(v, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                positions[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], v)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                positions[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+    }
+
+    /**
+     * Eliminates the variables in the given order and returns the clique of each step: the eliminated variable and its
+     * neighbors at that time. Eliminating all the variables triangulates the graph, and the cliques of the steps
+     * include all the maximal cliques of the triangulated graph.
+     *
+     * @param order the elimination order
+     * @return the clique of each step, in the order of the steps
+     */
+    public List<Set<Variable>> eliminationCliques(List<Variable> order) {
+        // Work on local copies to avoid mutating the graph
+        Map<Variable, Set<Variable>> neighborsMap = new HashMap<>();
+        for (Map.Entry<Variable, Set<Variable>> entry : variableToNeighborsMap.entrySet()) {
+            neighborsMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+
+        List<Set<Variable>> cliques = new ArrayList<>();
+        for (Variable variable : order) {
+            Set<Variable> neighbors = neighborsMap.remove(variable);
+            Set<Variable> clique = new LinkedHashSet<>();
+            clique.add(variable);
+            clique.addAll(neighbors);
+            cliques.add(clique);
+
+            // Add fill-in edges between all neighbors of the variable, and remove it from their sets
+            for (Variable v1 : neighbors) {
+                Set<Variable> v1Neighbors = neighborsMap.get(v1);
+                v1Neighbors.addAll(neighbors);
+                v1Neighbors.remove(v1);
+                v1Neighbors.remove(variable);
+            }
+        }
+        return cliques;
+    }
+}
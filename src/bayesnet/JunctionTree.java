@@ -0,0 +1,324 @@
+package bayesnet;
+
+import java.util.*;
+
+/**
+ * A junction tree (clique tree) of a Bayesian network, for answering many queries under the same evidence.
+ * <p>
+ * The tree is built once per network: the moral graph (the interaction graph of all the CPTs) is triangulated with the
+ * min-fill order, or the order of the {@link OrderingSearch} of the network if it has one, the maximal cliques of the triangulation are connected by a maximum spanning tree over the separator
+ * sizes, and every CPT is assigned to a clique that contains its family.
+ * <p>
+ * For each evidence set the tree is calibrated once with Shafer-Shenoy message passing: every clique sends a message to
+ * its parent (collect), then every clique sends a message to its children (distribute). The belief of a clique is its
+ * potential times all its incoming messages, and is proportional to the joint of the clique variables and the evidence.
+ * A query whose variables are in one clique is then answered from the smallest such belief.
+ * The calibrations of the recent evidence sets are cached, with the sums and products they took. A query is charged
+ * for the marginalization of its clique only, and the calibration of its evidence is added to the separate calibration
+ * counts of its {@link Counter}, whether it was cached or not, so both counts do not depend on the queries before it or
+ * on the threads answering them.
+ */
+class JunctionTree {
+    private static final int CALIBRATION_CACHE_CAPACITY = 64;
+
+    private final List<List<Variable>> cliques;
+    private final List<Factor> potentials;
+    private final List<List<Integer>> children;
+    private final List<Set<Variable>> separators; // the separator between a clique and its parent
+    private final int[] order; // a parent comes before its children
+
+    private final Map<String, Calibration> calibrations;
+
+    /**
+     * The beliefs of the cliques for an evidence set, and the counts of computing them.
+     */
+    private static class Calibration {
+        final Factor[] beliefs;
+        final Counter counter;
+
+        Calibration(Factor[] beliefs, Counter counter) {
+            this.beliefs = beliefs;
+            this.counter = counter;
+        }
+    }
+
+    /**
+     * Builds the junction tree of the network.
+     *
+     * @param variables all the variables of the network (with their CPTs)
+     * @param search    the search for the triangulation order, or null for the min-fill order
+     */
+    JunctionTree(Collection<Variable> variables, OrderingSearch search) {
+        List<Factor> cpts = new ArrayList<>();
+        for (Variable variable : variables) {
+            cpts.add(variable.getFactor());
+        }
+
+        // triangulate the moral graph, and keep the maximal cliques
+        InteractionGraph moralGraph = new InteractionGraph(cpts);
+        List<Variable> eliminationOrder = triangulationOrder(moralGraph, variables, search);
+        List<Set<Variable>> eliminationCliques = moralGraph.eliminationCliques(eliminationOrder);
+        this.cliques = new ArrayList<>();
+        for (int i = 0; i < eliminationCliques.size(); i++) {
+            Set<Variable> clique = eliminationCliques.get(i);
+            boolean maximal = true;
+            for (int j = 0; j < eliminationCliques.size() && maximal; j++) {
+                Set<Variable> other = eliminationCliques.get(j);
+                // a clique is dropped if it is inside a larger clique, or equal to a later one
+                if (i != j && other.containsAll(clique) && (other.size() > clique.size() || j > i)) {
+                    maximal = false;
+                }
+            }
+            if (maximal) {
+                cliques.add(new ArrayList<>(clique));
+            }
+        }
+
+        // connect the cliques with a maximum spanning tree over the separator sizes (Kruskal)
+        int numCliques = cliques.size();
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < numCliques; i++) {
+            for (int j = i + 1; j < numCliques; j++) {
+                edges.add(new int[]{i, j, intersection(cliques.get(i), cliques.get(j)).size()});
+            }
+        }
+        edges.sort((e1, e2) -> Integer.compare(e2[2], e1[2]));
+        int[] component = new int[numCliques];
+        for (int i = 0; i < numCliques; i++) {
+            component[i] = i;
+        }
+        List<List<Integer>> neighbors = new ArrayList<>();
+        for (int i = 0; i < numCliques; i++) {
+            neighbors.add(new ArrayList<>());
+        }
+        for (int[] edge : edges) {
+            int root1 = findComponent(component, edge[0]);
+            int root2 = findComponent(component, edge[1]);
+            if (root1 != root2) {
+                component[root1] = root2;
+                neighbors.get(edge[0]).add(edge[1]);
+                neighbors.get(edge[1]).add(edge[0]);
+            }
+        }
+
+        // root the tree at clique 0
+        this.children = new ArrayList<>();
+        this.separators = new ArrayList<>();
+        for (int i = 0; i < numCliques; i++) {
+            children.add(new ArrayList<>());
+            separators.add(null);
+        }
+        this.order = new int[numCliques];
+        boolean[] visited = new boolean[numCliques];
+        visited[0] = true;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int clique = order[head++];
+            for (int neighbor : neighbors.get(clique)) {
+                if (!visited[neighbor]) {
+                    visited[neighbor] = true;
+                    children.get(clique).add(neighbor);
+                    separators.set(neighbor, intersection(cliques.get(neighbor), cliques.get(clique)));
+                    order[tail++] = neighbor;
+                }
+            }
+        }
+
+        // the potential of a clique: a unit factor over the clique, times the CPTs assigned to it
+        Counter counter = new Counter(); // building the tree is not part of any query
+        this.potentials = new ArrayList<>();
+        List<List<Factor>> assigned = new ArrayList<>();
+        for (List<Variable> clique : cliques) {
+            double[] ones = new double[(int) Factor.tableSize(clique)];
+            Arrays.fill(ones, 1.0);
+            assigned.add(new ArrayList<>(Collections.singletonList(new Factor(clique, ones))));
+        }
+        for (Factor cpt : cpts) {
+            int best = -1;
+            for (int i = 0; i < numCliques; i++) {
+                if (cliques.get(i).containsAll(cpt.getVariables())
+                        && (best == -1 || cliques.get(i).size() < cliques.get(best).size())) {
+                    best = i;
+                }
+            }
+            assigned.get(best).add(cpt);
+        }
+        for (List<Factor> factors : assigned) {
+            potentials.add(Factor.join(factors, counter));
+        }
+
+        this.calibrations = new LinkedHashMap<String, Calibration>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Calibration> eldest) {
+                return size() > CALIBRATION_CACHE_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * @return the order that triangulates the moral graph: the one of the search if there is one, min-fill otherwise
+     */
+    static List<Variable> triangulationOrder(InteractionGraph moralGraph, Collection<Variable> variables, OrderingSearch search) {
+        Set<Variable> all = new HashSet<>(variables);
+        return search == null ? moralGraph.minFillOrder(all) : search.order(moralGraph, all);
+    }
+
+    private static int findComponent(int[] component, int i) {
+        while (component[i] != i) {
+            component[i] = component[component[i]];
+            i = component[i];
+        }
+        return i;
+    }
+
+    private static Set<Variable> intersection(List<Variable> clique1, List<Variable> clique2) {
+        Set<Variable> intersection = new LinkedHashSet<>(clique1);
+        intersection.retainAll(clique2);
+        return intersection;
+    }
+
+    /**
+     * @param queryVars the query variables
+     * @return true if some clique contains all the query variables, so the query can be answered from the tree
+     */
+    boolean covers(Collection<Variable> queryVars) {
+        for (List<Variable> clique : cliques) {
+            if (clique.containsAll(queryVars)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the probability of the query outcomes given the evidence, from the calibrated tree.
+     *
+     * @param queryOutcomes    the query outcomes, their variables must be in one clique (see {@link #covers(Collection)})
+     * @param evidenceOutcomes the evidence outcomes
+     * @param counter          the counter of the query, counts the marginalization, and the calibration (cached or not) apart
+     * @return the probability of the query given the evidence
+     */
+    double probability(List<VariableOutcome> queryOutcomes, List<VariableOutcome> evidenceOutcomes, Counter counter) {
+        List<Variable> queryVars = new ArrayList<>();
+        for (VariableOutcome vo : queryOutcomes) {
+            queryVars.add(vo.variable);
+        }
+        Factor[] beliefs = getCalibration(evidenceOutcomes, counter);
+
+        // the smallest belief over the query variables
+        Factor belief = null;
+        for (int i = 0; i < cliques.size(); i++) {
+            if (cliques.get(i).containsAll(queryVars) && (belief == null || beliefs[i].getSize() < belief.getSize())) {
+                belief = beliefs[i];
+            }
+        }
+        if (belief == null) {
+            throw new IllegalArgumentException("No clique contains all the query variables: " + queryVars);
+        }
+
+        Factor marginal = sumOutAllBut(belief, new HashSet<>(queryVars), counter);
+        return marginal.normalize(counter).getProbability(queryOutcomes);
+    }
+
+    /**
+     * Returns the beliefs of the cliques calibrated for the given evidence, calibrating the tree if the evidence is new.
+     * The counts of the calibration are added to the calibration counts of the counter either way.
+     */
+    private Factor[] getCalibration(List<VariableOutcome> evidenceOutcomes, Counter counter) {
+        String key = evidenceKey(evidenceOutcomes);
+        Calibration calibration;
+        synchronized (calibrations) {
+            calibration = calibrations.get(key);
+        }
+        if (calibration == null) {
+            Counter calibrationCounter = new Counter();
+            calibration = new Calibration(calibrate(evidenceOutcomes, calibrationCounter), calibrationCounter);
+            synchronized (calibrations) {
+                calibrations.put(key, calibration);
+            }
+        }
+        counter.addCalibration(calibration.counter);
+        return calibration.beliefs;
+    }
+
+    private static String evidenceKey(List<VariableOutcome> evidenceOutcomes) {
+        List<String> assignments = new ArrayList<>();
+        for (VariableOutcome vo : evidenceOutcomes) {
+            assignments.add(vo.variable.getName() + "=" + vo.outcome);
+        }
+        Collections.sort(assignments);
+        return String.join(",", assignments);
+    }
+
+    /**
+     * Calibrates the tree for the given evidence with Shafer-Shenoy message passing.
+     *
+     * @return the belief of each clique
+     */
+    private Factor[] calibrate(List<VariableOutcome> evidenceOutcomes, Counter counter) {
+        int numCliques = cliques.size();
+        Factor[] evidencePotentials = new Factor[numCliques];
+        for (int i = 0; i < numCliques; i++) {
+            evidencePotentials[i] = potentials.get(i).setEvidences(evidenceOutcomes);
+        }
+
+        // collect: from the leaves up, each clique sends its parent the product of its potential and its children messages
+        Factor[] up = new Factor[numCliques];
+        for (int k = numCliques - 1; k > 0; k--) {
+            int clique = order[k];
+            List<Factor> factors = new ArrayList<>();
+            factors.add(evidencePotentials[clique]);
+            for (int child : children.get(clique)) {
+                factors.add(up[child]);
+            }
+            up[clique] = sumOutAllBut(Factor.join(factors, counter), separators.get(clique), counter);
+        }
+
+        // distribute: from the root down, each clique sends each child everything it got, except what that child sent
+        Factor[] down = new Factor[numCliques];
+        for (int k = 0; k < numCliques; k++) {
+            int clique = order[k];
+            for (int child : children.get(clique)) {
+                List<Factor> factors = new ArrayList<>();
+                factors.add(evidencePotentials[clique]);
+                if (down[clique] != null) {
+                    factors.add(down[clique]);
+                }
+                for (int sibling : children.get(clique)) {
+                    if (sibling != child) {
+                        factors.add(up[sibling]);
+                    }
+                }
+                down[child] = sumOutAllBut(Factor.join(factors, counter), separators.get(child), counter);
+            }
+        }
+
+        // the belief of a clique is its potential times all its incoming messages
+        Factor[] beliefs = new Factor[numCliques];
+        for (int clique = 0; clique < numCliques; clique++) {
+            List<Factor> factors = new ArrayList<>();
+            factors.add(evidencePotentials[clique]);
+            if (down[clique] != null) {
+                factors.add(down[clique]);
+            }
+            for (int child : children.get(clique)) {
+                factors.add(up[child]);
+            }
+            beliefs[clique] = Factor.join(factors, counter);
+        }
+        return beliefs;
+    }
+
+    /**
+     * Sums out all the variables of the factor that are not in the given set.
+     */
+    private static Factor sumOutAllBut(Factor factor, Set<Variable> keep, Counter counter) {
+        for (Variable variable : new ArrayList<>(factor.getVariables())) {
+            if (!keep.contains(variable)) {
+                factor = factor.eliminate(variable, counter);
+            }
+        }
+        return factor;
+    }
+}
@@ -0,0 +1,185 @@
+package bayesnet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Approximate inference by likelihood weighting (query method 'S').
+ * <p>
+ * A sample visits the variables in topological order: an evidence variable is set to its observed outcome and
+ * multiplies the weight of the sample by the probability of that outcome given its parents, any other variable is
+ * drawn from its CPT given its parents. The estimate of P(query | evidence) is the weight of the samples that match the
+ * query over the weight of all the samples, and its standard error follows from the delta method for a ratio:
+ * <pre>
+ * SE^2 = sum(w^2 * (match - p)^2) / sum(w)^2
+ * </pre>
+ * Sampling runs in rounds, see {@link SamplingOptions}. The Wilson bound on the standard error uses the effective number
+ * of samples {@code sum(w)^2 / sum(w^2)}.
+ * <p>
+ * The counter counts a product for every evidence weight, and a sum for every weight added to the totals.
+ */
+class LikelihoodWeighting {
+    static final char METHOD = 'S';
+
+    private final CompiledNetwork network;
+
+    LikelihoodWeighting(CompiledNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Estimates the probability of the query outcomes given the evidence.
+     *
+     * @param queryOutcomes    the query outcomes
+     * @param evidenceOutcomes the evidence outcomes
+     * @param options          the sampling options
+     * @param counter          the counter of the query
+     * @return the estimate, its standard error and the number of samples
+     */
+    QueryResult estimate(List<VariableOutcome> queryOutcomes, List<VariableOutcome> evidenceOutcomes, SamplingOptions options, Counter counter) {
+        int[] evidence = new int[network.size()]; // the observed outcome index of each variable, -1 if not observed
+        Arrays.fill(evidence, -1);
+        for (VariableOutcome vo : evidenceOutcomes) {
+            evidence[network.indexOf(vo.variable)] = vo.outcomeIndex;
+        }
+        int[] queryVars = new int[queryOutcomes.size()];
+        int[] queryValues = new int[queryOutcomes.size()];
+        for (int i = 0; i < queryVars.length; i++) {
+            queryVars[i] = network.indexOf(queryOutcomes.get(i).variable);
+            queryValues[i] = queryOutcomes.get(i).outcomeIndex;
+        }
+
+        SplittableRandom random = new SplittableRandom(options.getSeed());
+        Sampler[] samplers = new Sampler[options.getSamplers()];
+        for (int i = 0; i < samplers.length; i++) {
+            samplers[i] = new Sampler(random.split(), evidence, queryVars, queryValues);
+        }
+
+        long samples = 0;
+        double estimate = Double.NaN;
+        double standardError = Double.NaN;
+        while (samples < options.getMaxSamples()) {
+            long remaining = options.getMaxSamples() - samples;
+            int batchSize = (int) Math.min(options.getBatchSize(), (remaining + samplers.length - 1) / samplers.length);
+            if (samplers.length == 1) {
+                samplers[0].draw(batchSize);
+            } else {
+                Arrays.stream(samplers).parallel().forEach(sampler -> sampler.draw(batchSize));
+            }
+
+            // merge the samplers in order, so the totals do not depend on the scheduling
+            double weight = 0;
+            double matchWeight = 0;
+            double squaredWeight = 0;
+            double squaredMatchWeight = 0;
+            long matches = 0;
+            long misses = 0;
+            samples = 0;
+            for (Sampler sampler : samplers) {
+                weight += sampler.weight;
+                matchWeight += sampler.matchWeight;
+                squaredWeight += sampler.squaredWeight;
+                squaredMatchWeight += sampler.squaredMatchWeight;
+                samples += sampler.samples;
+                matches += sampler.matches;
+                misses += sampler.misses;
+            }
+            if (weight > 0) {
+                estimate = matchWeight / weight;
+                double variance = squaredMatchWeight * (1 - 2 * estimate) + estimate * estimate * squaredWeight;
+                standardError = options.withWilsonFloor(Math.sqrt(Math.max(variance, 0)) / weight, estimate,
+                        weight * weight / squaredWeight);
+                if (options.converged(samples, matches, misses, standardError)) {
+                    break;
+                }
+            }
+        }
+
+        for (Sampler sampler : samplers) {
+            counter.add(sampler.counter);
+        }
+        return new QueryResult(estimate, standardError, samples, counter);
+    }
+
+    /**
+     * Draws weighted samples from one random stream, and keeps the totals of its samples.
+     */
+    private class Sampler {
+        private final SplittableRandom random;
+        private final int[] evidence;
+        private final int[] queryVars;
+        private final int[] queryValues;
+        private final int numEvidence;
+        private final int[] assignment;
+        private final Counter counter = new Counter();
+
+        double weight;
+        double matchWeight;
+        double squaredWeight;
+        double squaredMatchWeight;
+        long samples;
+        long matches; // the samples with a weight above 0 that match the query
+        long misses; // and that do not
+
+        Sampler(SplittableRandom random, int[] evidence, int[] queryVars, int[] queryValues) {
+            this.random = random;
+            this.evidence = evidence;
+            this.queryVars = queryVars;
+            this.queryValues = queryValues;
+            this.numEvidence = (int) Arrays.stream(evidence).filter(value -> value != -1).count();
+            this.assignment = new int[network.size()];
+        }
+
+        void draw(int count) {
+            for (int s = 0; s < count; s++) {
+                double w = 1.0;
+                for (int v = 0; v < assignment.length; v++) {
+                    double[] cpt = network.cpts[v];
+                    int offset = network.rowOffset(v, assignment);
+                    if (evidence[v] != -1) {
+                        assignment[v] = evidence[v];
+                        w *= cpt[offset + evidence[v]];
+                    } else {
+                        assignment[v] = drawOutcome(cpt, offset, network.cardinalities[v]);
+                    }
+                }
+
+                boolean match = true;
+                for (int i = 0; i < queryVars.length && match; i++) {
+                    match = assignment[queryVars[i]] == queryValues[i];
+                }
+                weight += w;
+                squaredWeight += w * w;
+                if (match) {
+                    matchWeight += w;
+                    squaredMatchWeight += w * w;
+                }
+                if (w > 0) {
+                    if (match) {
+                        matches++;
+                    } else {
+                        misses++;
+                    }
+                }
+                counter.incrementProductCounter(numEvidence);
+                counter.incrementSumCounter(match ? 2 : 1);
+            }
+            samples += count;
+        }
+
+        /**
+         * Draws an outcome from the distribution in cpt[offset, offset + cardinality).
+         */
+        private int drawOutcome(double[] cpt, int offset, int cardinality) {
+            double u = random.nextDouble();
+            for (int outcome = 0; outcome < cardinality - 1; outcome++) {
+                u -= cpt[offset + outcome];
+                if (u < 0) {
+                    return outcome;
+                }
+            }
+            return cardinality - 1;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bayesnet;
+
+/**
+ * A limit on the size of the factors of methods 2, 3 and 4, checked against the sizes predicted by the query plan before
+ * any table is allocated (see {@link BayesNet#setMemoryBudget(MemoryBudget)}). Immutable, e.g.
+ * <pre>
+ * bayesNet.setMemoryBudget(MemoryBudget.ofBytes(256L &lt;&lt; 20).withFallback(MemoryBudget.Fallback.SAMPLING));
+ * </pre>
+ * <p>
+ * When the largest factor of a plan would need more than the budget, the min-degree, min-fill, weighted min-fill and
+ * min-weight orders (and the order of the {@link OrderingSearch}, if any) are tried, and the order with the smallest
+ * largest factor is used if it fits. Otherwise the query either fails with a {@link MemoryBudgetExceededException}, or
+ * is answered with likelihood weighting (method S, with the {@link SamplingOptions} of the network).
+ * A junction tree (method 4) whose largest clique does not fit is not built, the query is eliminated like method 3.
+ */
+public class MemoryBudget {
+    /**
+     * What to do with a query that does not fit in the budget with any order.
+     */
+    public enum Fallback {
+        /**
+         * Throw a {@link MemoryBudgetExceededException}.
+         */
+        FAIL,
+        /**
+         * Estimate the probability with likelihood weighting.
+         */
+        SAMPLING
+    }
+
+    private final long maxFactorBytes;
+    private final Fallback fallback;
+
+    private MemoryBudget(long maxFactorBytes, Fallback fallback) {
+        if (maxFactorBytes < Double.BYTES) {
+            throw new IllegalArgumentException("The budget must hold at least one row: " + maxFactorBytes);
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("The fallback must not be null");
+        }
+        this.maxFactorBytes = maxFactorBytes;
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param maxFactorBytes the size of the largest factor table, in bytes (8 per row)
+     * @return a budget that fails the queries that do not fit
+     */
+    public static MemoryBudget ofBytes(long maxFactorBytes) {
+        return new MemoryBudget(maxFactorBytes, Fallback.FAIL);
+    }
+
+    /**
+     * @param fallback what to do with a query that does not fit
+     */
+    public MemoryBudget withFallback(Fallback fallback) {
+        return new MemoryBudget(maxFactorBytes, fallback);
+    }
+
+    public long getMaxFactorBytes() {
+        return maxFactorBytes;
+    }
+
+    /**
+     * @return the number of rows of the largest factor that fits
+     */
+    public long getMaxFactorSize() {
+        return maxFactorBytes / Double.BYTES;
+    }
+
+    public Fallback getFallback() {
+        return fallback;
+    }
+
+    /**
+     * @param factorSize a number of rows
+     * @return whether a factor of that size fits
+     */
+    boolean fits(long factorSize) {
+        return factorSize <= getMaxFactorSize();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget{" +
+                "maxFactorBytes=" + maxFactorBytes +
+                ", fallback=" + fallback +
+                '}';
+    }
+}
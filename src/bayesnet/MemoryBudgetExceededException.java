@@ -0,0 +1,35 @@
+package bayesnet;
+
+/**
+ * Thrown when a query cannot be answered within the {@link MemoryBudget} of the network, before any table is allocated.
+ */
+public class MemoryBudgetExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final long factorSize;
+    private final long maxFactorSize;
+
+    /**
+     * @param shape         the shape of the query, e.g. "B|J,M|3"
+     * @param factorSize    the rows of the largest factor of the cheapest order
+     * @param maxFactorSize the rows of the largest factor that fits in the budget
+     */
+    public MemoryBudgetExceededException(String shape, long factorSize, long maxFactorSize) {
+        super("A query of shape " + shape + " needs a factor of " + factorSize + " rows (" + bytes(factorSize)
+                + " bytes), the memory budget allows " + maxFactorSize + " rows");
+        this.factorSize = factorSize;
+        this.maxFactorSize = maxFactorSize;
+    }
+
+    private static String bytes(long rows) {
+        return rows > Long.MAX_VALUE / Double.BYTES ? "more than " + Long.MAX_VALUE : String.valueOf(rows * Double.BYTES);
+    }
+
+    public long getFactorSize() {
+        return factorSize;
+    }
+
+    public long getMaxFactorSize() {
+        return maxFactorSize;
+    }
+}
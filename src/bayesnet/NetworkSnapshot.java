@@ -0,0 +1,165 @@
+package bayesnet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A compact binary snapshot of a loaded {@link BayesNet}, which loads much faster than parsing the BIFXML file.
+ * <p>
+ * The format (big-endian):
+ * <pre>
+ * int      magic "BNET", int version
+ * int      the number of variables n
+ * n times  the variable: string name, int number of outcomes, string outcomes...
+ * n times  the CPT: int number of parents, int parent indices..., int table length, padding to 8 bytes, double table...
+ * </pre>
+ * A string is an int length followed by its UTF-8 bytes. The variables are written in the iteration order of the
+ * network, so the loaded network iterates its variables in the same order, and answers queries with the same counts.
+ * <p>
+ * The file is loaded through a memory-mapped {@link FileChannel}: each table is bulk-copied once from the mapped file into
+ * the array that its CPT then owns, without any parsing or further copy.
+ */
+public class NetworkSnapshot {
+    public static final String EXTENSION = ".bnet";
+
+    private static final int MAGIC = 0x424E4554; // "BNET"
+    private static final int VERSION = 1;
+
+    private NetworkSnapshot() {
+    }
+
+    /**
+     * Converts a BIFXML file to a snapshot.
+     *
+     * @param args the BIFXML file and the snapshot file, e.g. "alarm_net.xml alarm_net.bnet"
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: NetworkSnapshot <network.xml> <network" + EXTENSION + ">");
+            System.exit(1);
+        }
+        save(BifXmlLoader.load(args[0]), args[1]);
+    }
+
+    /**
+     * Writes a snapshot of the network.
+     *
+     * @param bayesNet the network
+     * @param fileName the snapshot file
+     * @throws IllegalArgumentException if a variable has no CPT, or a parent that is not in the network
+     */
+    public static void save(BayesNet bayesNet, String fileName) throws IOException {
+        List<Variable> variables = new ArrayList<>(bayesNet.variables.values());
+        Map<Variable, Integer> indices = new HashMap<>();
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i), i);
+        }
+        // check the whole network before the file is created
+        for (Variable variable : variables) {
+            if (variable.getFactor() == null) {
+                throw new IllegalArgumentException("Variable " + variable.getName() + " has no CPT");
+            }
+            for (Variable parent : variable.getParents()) {
+                if (!indices.containsKey(parent)) {
+                    throw new IllegalArgumentException("Parent " + parent.getName() + " of variable " + variable.getName() + " is not in the network");
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(variables.size());
+            for (Variable variable : variables) {
+                writeString(out, variable.getName());
+                out.writeInt(variable.getOutcomes().size());
+                for (String outcome : variable.getOutcomes()) {
+                    writeString(out, outcome);
+                }
+            }
+            for (Variable variable : variables) {
+                out.writeInt(variable.getParents().size());
+                for (Variable parent : variable.getParents()) {
+                    out.writeInt(indices.get(parent));
+                }
+                double[] table = variable.getFactor().getValues();
+                out.writeInt(table.length);
+                while (out.size() % Double.BYTES != 0) {
+                    out.writeByte(0);
+                }
+                for (double value : table) {
+                    out.writeDouble(value);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Loads a network from a snapshot.
+     *
+     * @param fileName the snapshot file
+     * @return the network
+     * @throws IOException if the file cannot be read, or is not a snapshot
+     */
+    public static BayesNet load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a network snapshot: " + fileName);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported network snapshot version " + version + ": " + fileName);
+            }
+
+            BayesNet bayesNet = new BayesNet();
+            int numVariables = buffer.getInt();
+            String[] names = new String[numVariables];
+            for (int i = 0; i < numVariables; i++) {
+                names[i] = readString(buffer);
+                List<String> outcomes = new ArrayList<>();
+                int numOutcomes = buffer.getInt();
+                for (int j = 0; j < numOutcomes; j++) {
+                    outcomes.add(readString(buffer));
+                }
+                bayesNet.addVariable(names[i], outcomes);
+            }
+            for (int i = 0; i < numVariables; i++) {
+                List<String> parents = new ArrayList<>();
+                int numParents = buffer.getInt();
+                for (int j = 0; j < numParents; j++) {
+                    parents.add(names[buffer.getInt()]);
+                }
+                double[] table = new double[buffer.getInt()];
+                buffer.position((buffer.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES);
+                buffer.asDoubleBuffer().get(table);
+                buffer.position(buffer.position() + table.length * Double.BYTES);
+                bayesNet.addDependency(names[i], parents, table, false);
+            }
+            return bayesNet;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Corrupted network snapshot: " + fileName, e);
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
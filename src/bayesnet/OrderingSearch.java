@@ -0,0 +1,175 @@
+package bayesnet;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches for an elimination order with a smaller total table size (see {@link InteractionGraph#totalTableSize(List)})
+ * than the min-fill order, within a time budget. Enable it for methods 3 and 4 with
+ * {@link BayesNet#setOrderingSearch(OrderingSearch)}:
+ * <pre>
+ * bayesNet.setOrderingSearch(new OrderingSearch(50));
+ * </pre>
+ * <p>
+ * The searchers run in parallel, each with its own random stream split from the seed. Each one runs the min-fill,
+ * min-degree and weighted min-fill heuristics in turn, breaking their ties at random, until the budget is spent, and
+ * drops an order as soon as it gets larger than the best order found so far. The min-fill order is always a candidate,
+ * so the search never returns a worse order.
+ * <p>
+ * The orders are cached by the signature of the graph, which names its variables, their neighbors and the variables to
+ * eliminate, so a search belongs to one network: the network clears the cache whenever it changes. The cache is
+ * thread-safe.
+ */
+public class OrderingSearch {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final InteractionGraph.Heuristic[] HEURISTICS = {
+            InteractionGraph.Heuristic.MIN_FILL, InteractionGraph.Heuristic.MIN_DEGREE, InteractionGraph.Heuristic.WEIGHTED_MIN_FILL
+    };
+
+    private final long timeBudgetNanos;
+    private final int searchers;
+    private final long seed;
+    private final Map<String, List<Variable>> orders;
+    private long hits;
+    private long misses;
+
+    /**
+     * A search with one searcher per available processor and seed 42.
+     *
+     * @param timeBudgetMillis the time to search for the order of an elimination
+     */
+    public OrderingSearch(long timeBudgetMillis) {
+        this(timeBudgetMillis, Runtime.getRuntime().availableProcessors(), 42);
+    }
+
+    /**
+     * @param timeBudgetMillis the time to search for the order of an elimination, each heuristic runs at least once
+     * @param searchers        the number of searchers running in parallel
+     * @param seed             the seed of the random streams
+     */
+    public OrderingSearch(long timeBudgetMillis, int searchers, long seed) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("The time budget must not be negative: " + timeBudgetMillis);
+        }
+        if (searchers < 1) {
+            throw new IllegalArgumentException("The number of searchers must be positive: " + searchers);
+        }
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        this.searchers = searchers;
+        this.seed = seed;
+        this.orders = new LinkedHashMap<String, List<Variable>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Variable>> eldest) {
+                return size() > DEFAULT_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached order of the elimination, or searches for it.
+     *
+     * @param graph                the interaction graph of the factors
+     * @param variablesToEliminate the variables to eliminate
+     * @return the order of the variables to eliminate
+     */
+    List<Variable> order(InteractionGraph graph, Set<Variable> variablesToEliminate) {
+        String key = graph.signature(variablesToEliminate);
+        synchronized (this) {
+            List<Variable> order = orders.get(key);
+            if (order != null) {
+                hits++;
+                return order;
+            }
+            misses++;
+        }
+        List<Variable> order = Collections.unmodifiableList(search(graph, variablesToEliminate));
+        synchronized (this) {
+            orders.put(key, order);
+        }
+        return order;
+    }
+
+    /**
+     * @return the order with the smallest total table size found within the budget (like the min-fill order, without the
+     * variables that are not in the graph)
+     */
+    List<Variable> search(InteractionGraph graph, Set<Variable> variablesToEliminate) {
+        List<Variable> minFillOrder = graph.minFillOrder(variablesToEliminate);
+        AtomicLong bound = new AtomicLong(graph.totalTableSize(minFillOrder));
+        long deadline = System.nanoTime() + timeBudgetNanos;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Searcher[] searcherArray = new Searcher[searchers];
+        for (int i = 0; i < searcherArray.length; i++) {
+            searcherArray[i] = new Searcher(random.split());
+        }
+        if (searcherArray.length == 1) {
+            searcherArray[0].search(graph, variablesToEliminate, bound, deadline);
+        } else {
+            Arrays.stream(searcherArray).parallel().forEach(searcher -> searcher.search(graph, variablesToEliminate, bound, deadline));
+        }
+
+        // keep the min-fill order unless a searcher found a strictly smaller one
+        List<Variable> best = minFillOrder;
+        long bestSize = graph.totalTableSize(minFillOrder);
+        for (Searcher searcher : searcherArray) {
+            if (searcher.best != null && searcher.best.totalTableSize < bestSize) {
+                best = searcher.best.order;
+                bestSize = searcher.best.totalTableSize;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs the randomized heuristics on one random stream, and keeps its best order.
+     */
+    private static class Searcher {
+        private final SplittableRandom random;
+        private InteractionGraph.ScoredOrder best;
+
+        Searcher(SplittableRandom random) {
+            this.random = random;
+        }
+
+        void search(InteractionGraph graph, Set<Variable> variablesToEliminate, AtomicLong bound, long deadline) {
+            for (int i = 0; i < HEURISTICS.length || System.nanoTime() < deadline; i++) {
+                InteractionGraph.ScoredOrder order = graph.randomizedOrder(HEURISTICS[i % HEURISTICS.length], variablesToEliminate, random, bound.get());
+                if (order != null && (best == null || order.totalTableSize < best.totalTableSize)) {
+                    best = order;
+                    bound.accumulateAndGet(order.totalTableSize, Math::min);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all orders, e.g. after the network changed. The metrics are kept.
+     */
+    public synchronized void clear() {
+        orders.clear();
+    }
+
+    public synchronized int size() {
+        return orders.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OrderingSearch{" +
+                "size=" + orders.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package bayesnet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of {@link QueryPlan}s, keyed by the query shape (query variables, evidence variables and method).
+ * Queries that only differ in their outcomes share a plan, and skip the planning.
+ * The cache is thread-safe, so it can be shared by concurrent queries. Every {@link #clear()} starts a new generation,
+ * and a plan computed in an earlier generation is not added, so a query planned while the network changed cannot put
+ * back a stale plan.
+ */
+public class PlanCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<String, QueryPlan> plans;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long generation;
+
+    /**
+     * @param capacity the maximal number of plans to keep (0 disables the cache)
+     */
+    public PlanCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized QueryPlan get(String shape) {
+        QueryPlan plan = plans.get(shape);
+        if (plan == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return plan;
+    }
+
+    /**
+     * @return the generation of the cache, to read before computing a plan that will be added
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Adds a plan, unless the cache was cleared since the plan was started.
+     *
+     * @param generation the {@link #getGeneration()} before the plan was computed
+     */
+    synchronized void put(String shape, QueryPlan plan, long generation) {
+        if (generation == this.generation) {
+            plans.put(shape, plan);
+        }
+    }
+
+    /**
+     * Removes all plans, e.g. after the structure of the network changed, and drops the plans still being computed.
+     * The metrics are kept.
+     */
+    public synchronized void clear() {
+        plans.clear();
+        generation++;
+    }
+
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PlanCache{" +
+                "size=" + plans.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
@@ -0,0 +1,166 @@
+package bayesnet;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Where the time of the queries goes: a latency {@link Histogram} per {@link Phase}, and histograms of the peak and total
+ * factor sizes and of the number of eliminated variables of each variable elimination. Set it on one or more networks
+ * with {@link BayesNet#setQueryMetrics(QueryMetrics)}; without it, a query only checks a null field per phase.
+ * <p>
+ * The metrics are thread-safe and recording allocates nothing. {@link #report(boolean)} formats them as a table, and
+ * {@link #startReporting(long, TimeUnit, Consumer)} hands a report to a sink periodically, each covering the queries
+ * since the previous one.
+ */
+public class QueryMetrics implements AutoCloseable {
+    /**
+     * The phases of answering a query. The phases of planning only run when the plan of the query shape is not cached
+     * (see {@link PlanCache}), and the elimination phases only for methods 2 and 3 outside of a batch or session.
+     */
+    public enum Phase {
+        /** Parsing the query and looking up its variables. */
+        PARSE,
+        /** Finding the variables whose CPTs are needed, and the hidden variables among them. */
+        RELEVANCE,
+        /** Building the interaction graph and ordering the hidden variables (method 3). */
+        ORDER,
+        /** Setting the evidence on the initial factors. */
+        SET_EVIDENCE,
+        /** Joining the factors of each hidden variable and summing it out. */
+        ELIMINATE,
+        /** Joining the remaining factors and normalizing them. */
+        FINAL_JOIN,
+        /** The whole query, with any method. */
+        QUERY
+    }
+
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final Histogram peakFactorSize = new Histogram();
+    private final Histogram totalFactorSize = new Histogram();
+    private final Histogram eliminatedVariables = new Histogram();
+    private ScheduledExecutorService reporter;
+
+    public QueryMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    /**
+     * Records the time of a phase.
+     *
+     * @param phase      the phase
+     * @param startNanos the {@link System#nanoTime()} when the phase started
+     * @return the time when the phase ended, the start of the next phase
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        phases.get(phase).record(Math.max(0, now - startNanos));
+        return now;
+    }
+
+    /**
+     * Records the factors of a variable elimination.
+     *
+     * @param counter             the counter of the query, with the sizes of its factors
+     * @param eliminatedVariables the number of hidden variables summed out
+     */
+    public void recordElimination(Counter counter, int eliminatedVariables) {
+        peakFactorSize.record(counter.getPeakFactorSize());
+        totalFactorSize.record(counter.getTotalFactorSize());
+        this.eliminatedVariables.record(eliminatedVariables);
+    }
+
+    /**
+     * @return the latencies of a phase, in nanoseconds
+     */
+    public Histogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return the rows of the largest factor of each elimination
+     */
+    public Histogram getPeakFactorSize() {
+        return peakFactorSize;
+    }
+
+    /**
+     * @return the rows of all the factors of each elimination
+     */
+    public Histogram getTotalFactorSize() {
+        return totalFactorSize;
+    }
+
+    /**
+     * @return the hidden variables summed out by each elimination
+     */
+    public Histogram getEliminatedVariables() {
+        return eliminatedVariables;
+    }
+
+    /**
+     * Formats the metrics as a table: a line per phase with its count and latencies in microseconds, then a line per
+     * factor metric.
+     *
+     * @param reset whether to start over, so the next report only covers the queries after this one
+     * @return the report
+     */
+    public String report(boolean reset) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-22s %10s %10s %10s %10s %10s %10s%n", "phase (us)", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Phase phase : Phase.values()) {
+            appendLine(sb, phase.name().toLowerCase(Locale.ROOT), phases.get(phase).snapshot(reset), 1e3);
+        }
+        appendLine(sb, "peak factor rows", peakFactorSize.snapshot(reset), 1);
+        appendLine(sb, "total factor rows", totalFactorSize.snapshot(reset), 1);
+        appendLine(sb, "eliminated variables", eliminatedVariables.snapshot(reset), 1);
+        return sb.toString();
+    }
+
+    private static void appendLine(StringBuilder sb, String name, Histogram histogram, double unit) {
+        long count = histogram.getCount();
+        sb.append(String.format(Locale.ROOT, "%-22s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, count,
+                count == 0 ? 0.0 : histogram.getMean() / unit,
+                histogram.getValueAtPercentile(50) / unit,
+                histogram.getValueAtPercentile(90) / unit,
+                histogram.getValueAtPercentile(99) / unit,
+                histogram.getMax() / unit));
+    }
+
+    /**
+     * Hands a report to the sink at a fixed rate, on a daemon thread, until {@link #close()}. Each report covers the
+     * queries since the previous one.
+     *
+     * @param period the time between the reports
+     * @param unit   the unit of the period
+     * @param sink   receives the reports, e.g. {@code System.err::print}
+     */
+    public synchronized void startReporting(long period, TimeUnit unit, Consumer<String> sink) {
+        if (reporter != null) {
+            throw new IllegalStateException("Already reporting");
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "query-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> sink.accept(report(true)), period, period, unit);
+    }
+
+    /**
+     * Stops the periodic reports.
+     */
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+}
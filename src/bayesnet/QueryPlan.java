@@ -0,0 +1,192 @@
+package bayesnet;
+
+import java.util.*;
+
+/**
+ * The structural part of answering a query: everything that depends only on the query variables, the evidence variables
+ * and the method, but not on their outcomes. A plan is computed once per query shape and kept in a {@link PlanCache}.
+ * <ul>
+ *     <li>A direct lookup answers the query from the CPT of the query variable.</li>
+ *     <li>Method 1 enumerates the query and hidden variables, in the stored order.</li>
+ *     <li>Method 4 reads the query from the calibrated {@link JunctionTree}.</li>
+ *     <li>Methods 2 and 3 run a fixed schedule of joins and eliminations over "slots" of factors:
+ *     the first slots hold the CPTs of {@link #factorSources} after setting the evidence, and every step joins some slots,
+ *     eliminates a variable and puts the result in a new slot.</li>
+ *     <li>A sampling plan answers the query with likelihood weighting, because the elimination would exceed the
+ *     {@link MemoryBudget}.</li>
+ * </ul>
+ */
+class QueryPlan {
+    final char method;
+    final boolean directLookup;
+    final boolean sampling;
+
+    // method 1: the variables to enumerate, in enumeration order
+    final List<Variable> queryVars;
+    final List<Variable> hiddenVars;
+
+    // methods 2 and 3
+    final List<Variable> factorSources;
+    final List<Step> steps;
+    final int[] finalJoinOrder;
+    final int slotCount;
+    final int prunedFactors; // the CPTs of the network that are not initial factors
+    final long sumCount; // the sums and products of running the plan, including the normalization
+    final long productCount;
+    final long peakFactorSize; // the rows of the largest factor of running the plan
+
+    private QueryPlan(char method, boolean directLookup, boolean sampling, List<Variable> queryVars, List<Variable> hiddenVars,
+                      List<Variable> factorSources, List<Step> steps, int[] finalJoinOrder, int slotCount, int prunedFactors,
+                      long sumCount, long productCount, long peakFactorSize) {
+        this.method = method;
+        this.directLookup = directLookup;
+        this.sampling = sampling;
+        this.queryVars = queryVars;
+        this.hiddenVars = hiddenVars;
+        this.factorSources = factorSources;
+        this.steps = steps;
+        this.finalJoinOrder = finalJoinOrder;
+        this.slotCount = slotCount;
+        this.prunedFactors = prunedFactors;
+        this.sumCount = sumCount;
+        this.productCount = productCount;
+        this.peakFactorSize = peakFactorSize;
+    }
+
+    /**
+     * One step of variable elimination: join the factors in the given slots (in this order), eliminate the variable, and
+     * put the result in {@code resultSlot} (-1 if the result has a single row and is dropped).
+     */
+    static class Step {
+        final Variable variable;
+        final int[] joinOrder;
+        final int resultSlot;
+
+        Step(Variable variable, int[] joinOrder, int resultSlot) {
+            this.variable = variable;
+            this.joinOrder = joinOrder;
+            this.resultSlot = resultSlot;
+        }
+    }
+
+    static QueryPlan directLookup(char method) {
+        return new QueryPlan(method, true, false, null, null, null, null, null, 0, 0, 0, 0, 0);
+    }
+
+    static QueryPlan junctionTree(char method) {
+        return new QueryPlan(method, false, false, null, null, null, null, null, 0, 0, 0, 0, 0);
+    }
+
+    static QueryPlan enumeration(char method, List<Variable> queryVars, List<Variable> hiddenVars) {
+        return new QueryPlan(method, false, false, queryVars, hiddenVars, null, null, null, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param peakFactorSize the largest factor of the elimination that was replaced
+     */
+    static QueryPlan sampling(char method, long peakFactorSize) {
+        return new QueryPlan(method, false, true, null, null, null, null, null, 0, 0, 0, 0, peakFactorSize);
+    }
+
+    /**
+     * Plans the variable elimination by simulating it on the variables of the factors (their scopes).
+     * The simulation follows {@link Factor#join(List, Counter)} and {@link Factor#eliminate(Variable, Counter)} exactly,
+     * so running the plan performs the same joins, in the same order, as eliminating the factors one variable at a time,
+     * and the simulation also gives the number of sums and products of running it, and the size of its largest factor,
+     * before any table is allocated.
+     *
+     * @param method           the method
+     * @param factorSources    the variables whose CPT is an initial factor
+     * @param scopes           the variables of each initial factor, after setting the evidence
+     * @param eliminationOrder the order in which to eliminate the hidden variables
+     * @param prunedFactors    the number of CPTs of the network that were pruned before the elimination
+     * @return the plan
+     */
+    static QueryPlan elimination(char method, List<Variable> factorSources, List<List<Variable>> scopes, List<Variable> eliminationOrder, int prunedFactors) {
+        List<List<Variable>> slotScopes = new ArrayList<>(scopes);
+        List<Integer> liveSlots = new ArrayList<>();
+        for (int i = 0; i < scopes.size(); i++) {
+            liveSlots.add(i);
+        }
+
+        List<Step> steps = new ArrayList<>();
+        long[] counts = new long[3]; // sums, products, peak factor size
+        for (List<Variable> scope : scopes) {
+            counts[2] = Math.max(counts[2], Factor.tableSize(scope));
+        }
+        for (Variable hiddenVariable : eliminationOrder) {
+            List<Integer> slotsWithHiddenVar = new ArrayList<>();
+            List<Integer> slotsWithoutHiddenVar = new ArrayList<>();
+            for (int slot : liveSlots) {
+                if (slotScopes.get(slot).contains(hiddenVariable)) {
+                    slotsWithHiddenVar.add(slot);
+                } else {
+                    slotsWithoutHiddenVar.add(slot);
+                }
+            }
+            int[] joinOrder = joinOrder(slotsWithHiddenVar, slotScopes);
+            List<Variable> eliminatedScope = joinScope(joinOrder, slotScopes, counts);
+            long joinedSize = Factor.tableSize(eliminatedScope);
+            eliminatedScope.remove(hiddenVariable);
+            counts[0] += joinedSize - Factor.tableSize(eliminatedScope);
+
+            int resultSlot = -1;
+            if (Factor.tableSize(eliminatedScope) > 1) { // only keep factors with more than one row
+                resultSlot = slotScopes.size();
+                slotScopes.add(eliminatedScope);
+                slotsWithoutHiddenVar.add(resultSlot);
+            }
+            steps.add(new Step(hiddenVariable, joinOrder, resultSlot));
+            liveSlots = slotsWithoutHiddenVar;
+        }
+
+        int[] finalJoinOrder = joinOrder(liveSlots, slotScopes);
+        counts[0] += Factor.tableSize(joinScope(finalJoinOrder, slotScopes, counts)) - 1; // the normalization
+        return new QueryPlan(method, false, false, null, null, factorSources, steps, finalJoinOrder, slotScopes.size(), prunedFactors,
+                counts[0], counts[1], counts[2]);
+    }
+
+    /**
+     * @return the given slots in the order {@link Factor#join(List, Counter)} would join them
+     */
+    private static int[] joinOrder(List<Integer> slots, List<List<Variable>> slotScopes) {
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("List of factors is empty.");
+        }
+        List<Integer> sorted = new ArrayList<>(slots);
+        sorted.sort((s1, s2) -> Factor.compareJoinOrder(slotScopes.get(s1), slotScopes.get(s2)));
+        return sorted.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param counts the sums, products and peak factor size so far, the products and sizes of the joins are added
+     * @return the variables of the factor joined from the given slots, in the order {@link Factor#join(Factor, Factor, Counter)} puts them
+     */
+    private static List<Variable> joinScope(int[] joinOrder, List<List<Variable>> slotScopes, long[] counts) {
+        Set<Variable> scope = new LinkedHashSet<>();
+        long size = 1;
+        for (int i = 0; i < joinOrder.length; i++) {
+            for (Variable variable : slotScopes.get(joinOrder[i])) {
+                if (scope.add(variable)) {
+                    size = Factor.saturatedMultiply(size, variable.getOutcomes().size());
+                }
+            }
+            if (i > 0) { // a join fills every row of the joined factor
+                counts[1] += size;
+                counts[2] = Math.max(counts[2], size);
+            }
+        }
+        return new ArrayList<>(scope);
+    }
+
+    /**
+     * @return the hidden variables in the order they are eliminated
+     */
+    List<Variable> getEliminationOrder() {
+        List<Variable> order = new ArrayList<>();
+        for (Step step : steps) {
+            order.add(step.variable);
+        }
+        return order;
+    }
+}
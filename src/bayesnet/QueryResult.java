@@ -0,0 +1,145 @@
+package bayesnet;
+
+/**
+ * The answer to a query: the probability, the number of sums and products that were needed to calculate it, and the
+ * number of CPTs that were pruned before the variable elimination (methods 2 and 3).
+ * <p>
+ * For method 4 the sums and products are those of reading the answer from the calibrated junction tree, and the
+ * calibration of the evidence, which is shared by every query with that evidence, is reported separately.
+ * <p>
+ * The approximate methods also report the standard error of the probability and the number of samples; for the exact
+ * methods both are 0. Gibbs sampling also reports the split R-hat of its chains (NaN for the other methods).
+ */
+public class QueryResult {
+    private final double probability;
+    private final double logProbability;
+    private final long sumCount;
+    private final long productCount;
+    private final long prunedFactorCount;
+    private final double standardError;
+    private final long sampleCount;
+    private final double rHat;
+    private final long peakFactorSize;
+    private final long calibrationSumCount;
+    private final long calibrationProductCount;
+
+    public QueryResult(double probability, Counter counter) {
+        this(probability, 0.0, 0, counter);
+    }
+
+    /**
+     * @param probability    the probability
+     * @param logProbability the natural logarithm of the probability, computed in log space
+     * @param counter        the counter of the query
+     */
+    public QueryResult(double probability, double logProbability, Counter counter) {
+        this(probability, logProbability, 0.0, 0, Double.NaN, counter);
+    }
+
+    /**
+     * @param probability   the estimated probability
+     * @param standardError the standard error of the estimate
+     * @param sampleCount   the number of samples of the estimate
+     * @param counter       the counter of the query
+     */
+    public QueryResult(double probability, double standardError, long sampleCount, Counter counter) {
+        this(probability, standardError, sampleCount, Double.NaN, counter);
+    }
+
+    /**
+     * @param probability   the estimated probability
+     * @param standardError the standard error of the estimate
+     * @param sampleCount   the number of samples of the estimate
+     * @param rHat          the split R-hat of the Markov chains of the estimate
+     * @param counter       the counter of the query
+     */
+    public QueryResult(double probability, double standardError, long sampleCount, double rHat, Counter counter) {
+        this(probability, Math.log(probability), standardError, sampleCount, rHat, counter);
+    }
+
+    private QueryResult(double probability, double logProbability, double standardError, long sampleCount, double rHat, Counter counter) {
+        this.probability = probability;
+        this.logProbability = logProbability;
+        this.standardError = standardError;
+        this.sampleCount = sampleCount;
+        this.rHat = rHat;
+        this.sumCount = counter.getSumCounter();
+        this.productCount = counter.getProductCounter();
+        this.prunedFactorCount = counter.getPrunedFactorCounter();
+        this.peakFactorSize = counter.getPeakFactorSize();
+        this.calibrationSumCount = counter.getCalibrationSumCounter();
+        this.calibrationProductCount = counter.getCalibrationProductCounter();
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * @return the natural logarithm of the probability, which joint probabilities computed in log space keep even when
+     * the probability underflows to 0
+     */
+    public double getLogProbability() {
+        return logProbability;
+    }
+
+    public long getSumCount() {
+        return sumCount;
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    public long getPrunedFactorCount() {
+        return prunedFactorCount;
+    }
+
+    public double getStandardError() {
+        return standardError;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getRHat() {
+        return rHat;
+    }
+
+    public long getPeakFactorSize() {
+        return peakFactorSize;
+    }
+
+    /**
+     * @return the sums of the junction tree calibration the answer was read from, whether this query ran it or found it
+     * cached (method 4 only)
+     */
+    public long getCalibrationSumCount() {
+        return calibrationSumCount;
+    }
+
+    /**
+     * @return the products of the junction tree calibration the answer was read from (method 4 only)
+     */
+    public long getCalibrationProductCount() {
+        return calibrationProductCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult{" +
+                "probability=" + probability +
+                ", logProbability=" + logProbability +
+                ", sumCount=" + sumCount +
+                ", productCount=" + productCount +
+                ", prunedFactorCount=" + prunedFactorCount +
+                ", standardError=" + standardError +
+                ", sampleCount=" + sampleCount +
+                ", rHat=" + rHat +
+                ", peakFactorSize=" + peakFactorSize +
+                ", calibrationSumCount=" + calibrationSumCount +
+                ", calibrationProductCount=" + calibrationProductCount +
+                '}';
+    }
+}
@@ -0,0 +1,407 @@
+package bayesnet;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A resident server that keeps networks loaded by name and answers their queries, so a client pays the JVM startup and
+ * the parsing of a network once. It reads one request per line, from a loopback socket or from standard input, and
+ * writes one response line per request, in the order of the requests:
+ * <pre>
+ * LOAD alarm alarm_net.xml             OK alarm 5
+ * QUERY alarm P(B=T|J=T,M=T),2         0.28417,7,16
+ * P(B=T|J=T,M=T),3                     0.28417,7,16    (the network named "default")
+ * LIST                                 OK alarm
+ * UNLOAD alarm                         OK alarm
+ * QUIT                                 (closes the connection)
+ * </pre>
+ * A query is answered like {@link BayesNet#answerQuery(String)} and its response is formatted like the lines of
+ * {@code output.txt}. A request that fails is answered with {@code ERROR <message>}. LOAD answers the number of
+ * variables of the network, and replaces a network of the same name.
+ * <p>
+ * The queries of all the connections are answered concurrently by a fixed pool of workers, on the networks loaded when
+ * they are read, so a connection sees the effects of its own LOAD and UNLOAD requests in order. At most
+ * {@code workers + queueCapacity} requests wait or run at a time: a connection whose next request does not fit stops
+ * reading until a request completes, and so does a connection with {@link #PIPELINE_DEPTH} responses not written yet,
+ * so a fast client is slowed down by TCP flow control instead of filling the memory.
+ */
+public class QueryServer implements AutoCloseable {
+    /**
+     * The network of the queries without a network name.
+     */
+    public static final String DEFAULT_NETWORK = "default";
+
+    /**
+     * The responses of a connection that may be pending, waiting to be written in order.
+     */
+    static final int PIPELINE_DEPTH = 1024;
+
+    private final Map<String, BayesNet> networks = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final Semaphore permits; // one per request that is queued or running
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket;
+    private volatile QueryMetrics queryMetrics; // set on every network, null to leave them as they are
+
+    /**
+     * @param workers       the number of threads answering requests
+     * @param queueCapacity the number of requests that may wait for a thread
+     */
+    public QueryServer(int workers, int queueCapacity) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers must be positive: " + workers);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity must not be negative: " + queueCapacity);
+        }
+        // the permits bound the requests in the queue
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "query-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.permits = new Semaphore(workers + queueCapacity);
+    }
+
+    /**
+     * Loads a network: a snapshot if the file ends with ".bnet" (see {@link NetworkSnapshot}), otherwise a BIFXML file.
+     */
+    public static BayesNet loadNetwork(String fileName) throws IOException, XMLStreamException {
+        if (fileName.endsWith(NetworkSnapshot.EXTENSION)) {
+            return NetworkSnapshot.load(fileName);
+        }
+        return BifXmlLoader.load(fileName);
+    }
+
+    /**
+     * Adds a network to the registry, replacing the network of the same name.
+     *
+     * @param name     the name of the network in the requests, without spaces
+     * @param bayesNet the network, shared read-only by the workers
+     */
+    public void register(String name, BayesNet bayesNet) {
+        if (name.isEmpty() || name.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Invalid network name: '" + name + "'");
+        }
+        QueryMetrics metrics = queryMetrics;
+        if (metrics != null) {
+            bayesNet.setQueryMetrics(metrics);
+        }
+        networks.put(name, bayesNet);
+    }
+
+    /**
+     * Makes the loaded networks, and the ones loaded later, record their queries into the given metrics.
+     *
+     * @param queryMetrics the metrics
+     */
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = Objects.requireNonNull(queryMetrics);
+        for (BayesNet bayesNet : networks.values()) {
+            bayesNet.setQueryMetrics(queryMetrics);
+        }
+    }
+
+    /**
+     * @return the names of the loaded networks, sorted
+     */
+    public List<String> getNetworkNames() {
+        List<String> names = new ArrayList<>(networks.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Starts accepting connections on the loopback address, each served by its own thread.
+     *
+     * @param port the port, 0 for any free port
+     * @return the port
+     */
+    public int start(int port) throws IOException {
+        ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        serverSocket = socket;
+        Thread acceptor = new Thread(() -> {
+            while (!socket.isClosed()) {
+                try {
+                    Socket connection = socket.accept();
+                    connection.setTcpNoDelay(true);
+                    connections.add(connection);
+                    Thread thread = new Thread(() -> {
+                        try (Socket closing = connection) {
+                            serve(closing.getInputStream(), closing.getOutputStream());
+                        } catch (IOException e) {
+                            // the client went away
+                        } finally {
+                            connections.remove(connection);
+                        }
+                    }, "query-connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    // the server socket was closed
+                }
+            }
+        }, "query-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Serves one connection until its input ends or it sends QUIT: reads the requests, hands them to the workers, and
+     * writes their responses in order. Returns once every response is written.
+     *
+     * @param in  the requests, one per line
+     * @param out the responses, one per line
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        Future<String> end = CompletableFuture.completedFuture(null);
+        ResponseWriter responseWriter = new ResponseWriter(pending, end, writer);
+        Thread writerThread = new Thread(responseWriter, "query-responses");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && responseWriter.failure == null) {
+                String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                if (request.equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                pending.put(submit(request));
+            }
+            pending.put(end);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+        }
+        if (responseWriter.failure != null) {
+            throw responseWriter.failure;
+        }
+    }
+
+    /**
+     * Answers a request, in the order of the connection: LOAD, UNLOAD and LIST are answered by the reading thread, and a
+     * query is handed to the workers with the network it names when it is read, waiting for a permit if too many
+     * requests are pending. A query is thus answered on the networks loaded by the requests before it, even if an
+     * UNLOAD follows it.
+     */
+    private Future<String> submit(String request) throws InterruptedException {
+        String[] words = request.split("\\s+", 3);
+        String command = words[0].toUpperCase(Locale.ROOT);
+        BayesNet bayesNet;
+        String query;
+        try {
+            switch (command) {
+                case "LOAD":
+                    checkArguments(words, 3, "LOAD <name> <file>");
+                    bayesNet = loadNetwork(words[2]);
+                    register(words[1], bayesNet);
+                    return CompletableFuture.completedFuture("OK " + words[1] + " " + bayesNet.variables.size());
+                case "UNLOAD":
+                    checkArguments(words, 2, "UNLOAD <name>");
+                    return CompletableFuture.completedFuture(networks.remove(words[1]) == null
+                            ? "ERROR Unknown network: " + words[1]
+                            : "OK " + words[1]);
+                case "LIST":
+                    return CompletableFuture.completedFuture("OK " + String.join(",", getNetworkNames()));
+                case "QUERY":
+                    checkArguments(words, 3, "QUERY <name> <query>");
+                    bayesNet = getNetwork(words[1]);
+                    query = words[2];
+                    break;
+                default:
+                    bayesNet = getNetwork(DEFAULT_NETWORK);
+                    query = request;
+            }
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(error(e));
+        }
+
+        permits.acquire();
+        try {
+            return workers.submit(() -> {
+                try {
+                    return answerQuery(bayesNet, query);
+                } catch (Exception e) {
+                    return error(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) { // the server is closed
+            permits.release();
+            return CompletableFuture.completedFuture("ERROR The server is closed");
+        }
+    }
+
+    private BayesNet getNetwork(String name) {
+        BayesNet bayesNet = networks.get(name);
+        if (bayesNet == null) {
+            throw new IllegalArgumentException("Unknown network: " + name);
+        }
+        return bayesNet;
+    }
+
+    /**
+     * @return the answer of a query, formatted like the lines of {@code output.txt}
+     */
+    private static String answerQuery(BayesNet bayesNet, String query) {
+        QueryResult result = bayesNet.answerQuery(query.replace(" ", ""));
+        return String.format(Locale.ROOT, "%.5f,%d,%d", result.getProbability(), result.getSumCount(), result.getProductCount());
+    }
+
+    private static String error(Exception e) {
+        return "ERROR " + (e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage().replace('\n', ' '));
+    }
+
+    private static void checkArguments(String[] words, int count, String usage) {
+        if (words.length != count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones, and stops the workers. The requests that are running are
+     * finished, the responses that are not written yet are dropped.
+     */
+    @Override
+    public void close() {
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * Writes the responses of a connection in the order of its requests, and flushes whenever it runs out of finished
+     * responses, so a pipelining client gets its responses in batches.
+     */
+    private static class ResponseWriter implements Runnable {
+        private final BlockingQueue<Future<String>> pending;
+        private final Future<String> end;
+        private final BufferedWriter writer;
+        private volatile IOException failure;
+
+        ResponseWriter(BlockingQueue<Future<String>> pending, Future<String> end, BufferedWriter writer) {
+            this.pending = pending;
+            this.end = end;
+            this.writer = writer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Future<String> next = pending.poll();
+                    if (next == null) {
+                        writer.flush();
+                        next = pending.take();
+                    }
+                    if (next == end) {
+                        writer.flush();
+                        return;
+                    }
+                    writer.write(response(next));
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                failure = e;
+                pending.clear(); // unblock the reader
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static String response(Future<String> future) throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                return "ERROR " + e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Runs the server: on a loopback port with "--port p", otherwise on standard input and output.
+     *
+     * @param args "--port p", "--threads n" (default: the number of processors), "--queue n" (default 1024), and any
+     *             number of "--network name=file" to load at startup (a file without a name is the default network);
+     *             "--metrics s" prints a report of the {@link QueryMetrics} to standard error every s seconds
+     */
+    public static void main(String[] args) throws Exception {
+        int port = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 1024;
+        int metricsPeriod = 0;
+        List<String> networkArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    queueCapacity = Integer.parseInt(args[++i]);
+                    break;
+                case "--network":
+                    networkArgs.add(args[++i]);
+                    break;
+                case "--metrics":
+                    metricsPeriod = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        QueryServer server = new QueryServer(threads, queueCapacity);
+        if (metricsPeriod > 0) {
+            QueryMetrics metrics = new QueryMetrics();
+            metrics.startReporting(metricsPeriod, TimeUnit.SECONDS, System.err::print);
+            server.setQueryMetrics(metrics);
+        }
+        for (String networkArg : networkArgs) {
+            int separator = networkArg.indexOf('=');
+            String name = separator == -1 ? DEFAULT_NETWORK : networkArg.substring(0, separator);
+            server.register(name, loadNetwork(networkArg.substring(separator + 1)));
+        }
+        if (port == -1) {
+            server.serve(System.in, System.out);
+            server.close();
+        } else {
+            System.err.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.start(port));
+            Thread.currentThread().join(); // until the process is killed
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package bayesnet;
+
+/**
+ * The settings of the approximate query methods (see {@link LikelihoodWeighting} and {@link GibbsSampler}).
+ * Immutable: the {@code with} methods return a copy with one setting changed, e.g.
+ * <pre>
+ * bayesNet.setSamplingOptions(SamplingOptions.defaults().withSamplers(8).withTargetHalfWidth(0.001));
+ * </pre>
+ * <p>
+ * The samples are drawn in rounds: in every round each sampler draws a batch of samples, in parallel, and sampling stops
+ * once the confidence interval (the estimate plus or minus {@code zScore} standard errors) is narrower than
+ * {@code 2 * targetHalfWidth}, or after {@code maxSamples} samples. The interval is only tested after {@code minSamples}
+ * samples, of which at least {@code minMatches} match the query and as many do not: an estimate of 0 or 1 has no spread
+ * in its samples, so it would otherwise look converged after a single round, and a few matches give a wrong estimate
+ * with a small standard error. The standard error is also at least the one of the Wilson score interval, which is not 0
+ * for an estimate of 0 or 1. Each sampler has its own random stream split from
+ * {@code seed}, so the same query with the same options always gets the same estimate, whatever the number of threads.
+ * <p>
+ * Gibbs sampling runs {@code chains} Markov chains instead of samplers: each chain first makes {@code burnIn} sweeps that
+ * are not counted, then keeps one sample every {@code thinning} sweeps, {@code batchSize} samples per round.
+ */
+public class SamplingOptions {
+    private static final SamplingOptions DEFAULTS = new SamplingOptions(4, 1000, 1_000_000, 0.005, 1.96, 42, 4, 1000, 1, 10_000, 100);
+
+    private final int samplers;
+    private final int batchSize;
+    private final long maxSamples;
+    private final double targetHalfWidth;
+    private final double zScore;
+    private final long seed;
+    private final int chains;
+    private final int burnIn;
+    private final int thinning;
+    private final long minSamples;
+    private final long minMatches;
+
+    private SamplingOptions(int samplers, int batchSize, long maxSamples, double targetHalfWidth, double zScore, long seed,
+                            int chains, int burnIn, int thinning, long minSamples, long minMatches) {
+        if (samplers < 1) {
+            throw new IllegalArgumentException("The number of samplers must be positive: " + samplers);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        if (maxSamples < 1) {
+            throw new IllegalArgumentException("The maximal number of samples must be positive: " + maxSamples);
+        }
+        if (!(targetHalfWidth >= 0)) {
+            throw new IllegalArgumentException("The target half width must not be negative: " + targetHalfWidth);
+        }
+        if (!(zScore > 0)) {
+            throw new IllegalArgumentException("The z-score must be positive: " + zScore);
+        }
+        if (chains < 1) {
+            throw new IllegalArgumentException("The number of chains must be positive: " + chains);
+        }
+        if (burnIn < 0) {
+            throw new IllegalArgumentException("The burn-in must not be negative: " + burnIn);
+        }
+        if (thinning < 1) {
+            throw new IllegalArgumentException("The thinning must be positive: " + thinning);
+        }
+        if (minSamples < 0) {
+            throw new IllegalArgumentException("The minimal number of samples must not be negative: " + minSamples);
+        }
+        if (minMatches < 1) {
+            throw new IllegalArgumentException("The minimal number of matching samples must be positive: " + minMatches);
+        }
+        this.samplers = samplers;
+        this.batchSize = batchSize;
+        this.maxSamples = maxSamples;
+        this.targetHalfWidth = targetHalfWidth;
+        this.zScore = zScore;
+        this.seed = seed;
+        this.chains = chains;
+        this.burnIn = burnIn;
+        this.thinning = thinning;
+        this.minSamples = minSamples;
+        this.minMatches = minMatches;
+    }
+
+    /**
+     * @return 4 samplers, batches of 1000 samples, at most 1000000 samples, a 95% confidence interval of +-0.005, seed 42,
+     * 4 Gibbs chains with a burn-in of 1000 sweeps and no thinning, and at least 10000 samples of which 100 match the
+     * query and 100 do not
+     */
+    public static SamplingOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param samplers the number of samplers drawing samples in parallel
+     */
+    public SamplingOptions withSamplers(int samplers) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param batchSize the number of samples each sampler draws before the stopping rule is checked
+     */
+    public SamplingOptions withBatchSize(int batchSize) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param maxSamples the number of samples after which sampling stops, even if the target is not reached
+     */
+    public SamplingOptions withMaxSamples(long maxSamples) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param targetHalfWidth the half width of the confidence interval at which sampling stops (0 to always draw
+     *                        {@code maxSamples} samples)
+     */
+    public SamplingOptions withTargetHalfWidth(double targetHalfWidth) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param zScore the number of standard errors on each side of the confidence interval, e.g. 1.96 for 95%
+     */
+    public SamplingOptions withZScore(double zScore) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param chains the number of Gibbs chains, run in parallel
+     */
+    public SamplingOptions withChains(int chains) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param burnIn the number of sweeps of each Gibbs chain before its samples are kept
+     */
+    public SamplingOptions withBurnIn(int burnIn) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param thinning a Gibbs chain keeps one sample every {@code thinning} sweeps
+     */
+    public SamplingOptions withThinning(int thinning) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param minSamples the number of samples before the confidence interval is tested
+     */
+    public SamplingOptions withMinSamples(long minSamples) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param minMatches the number of samples that must match the query, and that must not, before the confidence
+     *                   interval is tested
+     */
+    public SamplingOptions withMinMatches(long minMatches) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    /**
+     * @param seed the seed of the random streams
+     */
+    public SamplingOptions withSeed(long seed) {
+        return new SamplingOptions(samplers, batchSize, maxSamples, targetHalfWidth, zScore, seed, chains, burnIn, thinning, minSamples, minMatches);
+    }
+
+    public int getSamplers() {
+        return samplers;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getMaxSamples() {
+        return maxSamples;
+    }
+
+    public double getTargetHalfWidth() {
+        return targetHalfWidth;
+    }
+
+    public double getZScore() {
+        return zScore;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getChains() {
+        return chains;
+    }
+
+    public int getBurnIn() {
+        return burnIn;
+    }
+
+    public int getThinning() {
+        return thinning;
+    }
+
+    public long getMinSamples() {
+        return minSamples;
+    }
+
+    public long getMinMatches() {
+        return minMatches;
+    }
+
+    /**
+     * Bounds a standard error from below by the one of the Wilson score interval, {@code halfWidth / zScore}, where the
+     * half width of the interval of an estimate p over n samples is
+     * <pre>
+     * z / (1 + z^2 / n) * sqrt(p * (1 - p) / n + z^2 / (4 * n^2))
+     * </pre>
+     *
+     * @param standardError the standard error of the sampler, NaN if unknown
+     * @param estimate      the estimate
+     * @param n             the number of samples, or their effective number
+     * @return the standard error to report
+     */
+    double withWilsonFloor(double standardError, double estimate, double n) {
+        if (!(n > 0)) {
+            return standardError;
+        }
+        double z2 = zScore * zScore;
+        double halfWidth = zScore / (1 + z2 / n) * Math.sqrt(estimate * (1 - estimate) / n + z2 / (4 * n * n));
+        return Math.max(standardError, halfWidth / zScore);
+    }
+
+    /**
+     * The stopping rule of the samplers.
+     *
+     * @param samples       the number of samples
+     * @param matches       the samples that match the query
+     * @param misses        the samples that do not match the query (with a weight above 0)
+     * @param standardError the standard error of the estimate (see {@link #withWilsonFloor(double, double, double)})
+     * @return whether the estimate is precise enough to stop sampling
+     */
+    boolean converged(long samples, long matches, long misses, double standardError) {
+        return samples >= minSamples && matches >= minMatches && misses >= minMatches
+                && zScore * standardError <= targetHalfWidth;
+    }
+
+    @Override
+    public String toString() {
+        return "SamplingOptions{" +
+                "samplers=" + samplers +
+                ", batchSize=" + batchSize +
+                ", maxSamples=" + maxSamples +
+                ", targetHalfWidth=" + targetHalfWidth +
+                ", zScore=" + zScore +
+                ", seed=" + seed +
+                ", chains=" + chains +
+                ", burnIn=" + burnIn +
+                ", thinning=" + thinning +
+                ", minSamples=" + minSamples +
+                ", minMatches=" + minMatches +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package bayesnet;
+
+import java.util.Arrays;
+
+/**
+ * Parses the numbers of a BIFXML {@code TABLE} element into a {@code double[]}, as the text arrives from the XML reader.
+ * <p>
+ * The text may come in several chunks, and a number may be split between two chunks, so the current number is kept in
+ * a small buffer until a whitespace ends it. Numbers are parsed without creating a {@link String}, see
+ * {@link #parseDouble(char[], int, int)}.
+ */
+class TableParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private double[] values = new double[16];
+    private int size = 0;
+    private char[] token = new char[32];
+    private int tokenLength = 0;
+
+    /**
+     * Parses the next chunk of the text.
+     *
+     * @param chars  the characters
+     * @param start  the first character of the chunk
+     * @param length the length of the chunk
+     */
+    void append(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+            if (Character.isWhitespace(c)) {
+                endToken();
+            } else {
+                if (tokenLength == token.length) {
+                    token = Arrays.copyOf(token, 2 * token.length);
+                }
+                token[tokenLength++] = c;
+            }
+        }
+    }
+
+    /**
+     * @return the parsed numbers
+     */
+    double[] finish() {
+        endToken();
+        return Arrays.copyOf(values, size);
+    }
+
+    private void endToken() {
+        if (tokenLength == 0) {
+            return;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+        values[size++] = parseDouble(token, 0, tokenLength);
+        tokenLength = 0;
+    }
+
+    /**
+     * Parses a decimal number, like {@link Double#parseDouble(String)}.
+     * <p>
+     * Table entries are short decimals like "0.95": when the digits fit in 53 bits and the decimal exponent is at most 22,
+     * both the digits and the power of ten are exact doubles, so one multiplication or division rounds correctly
+     * (Clinger's fast path). Anything else goes to {@link Double#parseDouble(String)}.
+     *
+     * @param chars the characters
+     * @param start the first character of the number
+     * @param end   the end of the number (exclusive)
+     * @return the number
+     * @throws NumberFormatException if the characters are not a number
+     */
+    static double parseDouble(char[] chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        for (; i < end && chars[i] >= '0' && chars[i] <= '9'; i++, digits++) {
+            mantissa = 10 * mantissa + (chars[i] - '0');
+            if (mantissa != 0) {
+                significantDigits++;
+            }
+        }
+        if (i < end && chars[i] == '.') {
+            for (i++; i < end && chars[i] >= '0' && chars[i] <= '9'; i++, digits++) {
+                mantissa = 10 * mantissa + (chars[i] - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+                exponent--;
+            }
+        }
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            int exponentPart = 0;
+            int exponentDigits = 0;
+            for (; i < end && chars[i] >= '0' && chars[i] <= '9' && exponentDigits < 6; i++, exponentDigits++) {
+                exponentPart = 10 * exponentPart + (chars[i] - '0');
+            }
+            if (exponentDigits == 0) {
+                return slowParseDouble(chars, start, end);
+            }
+            exponent += negativeExponent ? -exponentPart : exponentPart;
+        }
+
+        if (i != end || digits == 0 || significantDigits > 18 || mantissa > MAX_EXACT_MANTISSA
+                || exponent < -22 || exponent > 22) {
+            return slowParseDouble(chars, start, end);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(char[] chars, int start, int end) {
+        return Double.parseDouble(new String(chars, start, end - start));
+    }
+}
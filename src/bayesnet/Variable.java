@@ -0,0 +1,152 @@
+package bayesnet;
+
+import java.util.*;
+
+public class Variable {
+    private final String name;
+    private final List<String> outcomes;
+    private List<Variable> parents;
+
+    private Factor factor;
+    private volatile BayesNet network; // the network that indexes this variable, null for a variable of no network
+
+    // set by the BayesNet before planning a query: a dense id, and the ids of this variable and all its ancestors
+    private int id;
+    private volatile BitSet ancestors;
+
+    public Variable(String name, List<String> outcomes) {
+        this.name = name;
+        this.outcomes = new ArrayList<>(outcomes);
+        this.parents = new ArrayList<>();
+        factor = null;
+        id = -1;
+        ancestors = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setCpt(double[] probabilities) {
+        setCpt(probabilities, true);
+    }
+
+    /**
+     * Sets the CPT of the variable over its parents and itself.
+     *
+     * @param probabilities the table, in the order of the parents and then the variable
+     * @param copy          whether to copy the table, or hand it to the CPT, which then owns it
+     */
+    void setCpt(double[] probabilities, boolean copy) {
+        if(parents == null){
+            throw new IllegalArgumentException("Parents are not set for variable " + name);
+        }
+        List<Variable> copyParents = new ArrayList<>(parents);
+        copyParents.add(this);
+        factor = new Factor(copyParents, probabilities, copy);
+    }
+
+    /**
+     * Changes the parents of the variable. The ancestors of its descendants change too, so the network of the variable
+     * drops the ancestors of all its variables (and its cached plans) until the next query indexes it again.
+     */
+    public void setParents(List<Variable> parents) {
+        this.parents = parents;
+        BayesNet network = this.network;
+        if (network != null) {
+            network.structureChanged();
+        } else {
+            ancestors = null;
+        }
+    }
+
+
+    public List<String> getOutcomes() {
+        return outcomes;
+    }
+
+    public List<Variable> getParents() {
+        return parents;
+    }
+
+    public Factor getFactor() {
+        return factor;
+    }
+
+    /**
+     * @return the id of the variable in its network, or -1 if the network was not indexed yet
+     */
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the ids of this variable and all its ancestors, or null if they are not computed (or out of date)
+     */
+    BitSet getAncestors() {
+        return ancestors;
+    }
+
+    void setAncestors(BitSet ancestors) {
+        this.ancestors = ancestors;
+    }
+
+    void setNetwork(BayesNet network) {
+        this.network = network;
+    }
+
+    /**
+     * check if this variable is a descendant of the given variable
+     * <p>
+     * Once the network computed the ancestors of its variables this is a single bit lookup, otherwise the ancestors are
+     * walked, visiting each one once.
+     *
+     * @param variable the variable that is can be a parent
+     * @return true if this variable is a descendant of the given variable (the given variable is an ancestor of this variable)
+     */
+    public boolean isDescendantOf(Variable variable) {
+        if (variable == null) return false;
+        if (this == variable) return true;
+        BitSet ancestors = this.ancestors;
+        if (ancestors != null && variable.ancestors != null) { // both are indexed by their network
+            return ancestors.get(variable.id);
+        }
+
+        Set<Variable> visited = new HashSet<>();
+        Deque<Variable> toVisit = new ArrayDeque<>(parents);
+        while (!toVisit.isEmpty()) {
+            Variable ancestor = toVisit.pop();
+            if (ancestor == variable) {
+                return true;
+            }
+            if (visited.add(ancestor)) {
+                toVisit.addAll(ancestor.parents);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Variable variable = (Variable) o;
+        return Objects.equals(name, variable.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public String toString() {
+        return "Variable{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+}
\ No newline at end of file
@@ -1,3 +1,5 @@
+package bayesnet;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,14 +12,17 @@ import java.util.List;
 public class VariableOutcome {
     Variable variable;
     String outcome;
+    int outcomeIndex; // the index of the outcome in the variable's outcomes
 
     VariableOutcome(Variable variable, String outcome) {
-        if (!variable.getOutcomes().contains(outcome)) {
+        int outcomeIndex = variable.getOutcomes().indexOf(outcome);
+        if (outcomeIndex == -1) {
             throw new IllegalArgumentException("Outcome " + outcome + " is not valid for variable " + variable.getName());
         }
 
         this.variable = variable;
         this.outcome = outcome;
+        this.outcomeIndex = outcomeIndex;
 
     }
 
@@ -29,6 +34,24 @@ public class VariableOutcome {
      * @return the probability of this variable given the parents.
      */
     public double getProbability(List<VariableOutcome> given) {
+        return variable.getFactor().getProbability(cptAssignment(given));
+    }
+
+    /**
+     * Get the natural logarithm of the probability of this variable given the parents, from the CPT in log space.
+     * All the relevant parents must be present in the given list.
+     *
+     * @param given the list of variables that are given.
+     * @return the logarithm of the probability of this variable given the parents.
+     */
+    public double getLogProbability(List<VariableOutcome> given) {
+        return variable.getFactor().toLogSpace().getLogProbability(cptAssignment(given));
+    }
+
+    /**
+     * @return the outcomes of the parents in the given list, then this outcome
+     */
+    private List<VariableOutcome> cptAssignment(List<VariableOutcome> given) {
         // remove all the `given` variables that are not in the `parents`
         List<Integer> indices = new ArrayList<>();
         for (int i = 0; i < given.size(); i++) {
@@ -42,16 +65,12 @@ public class VariableOutcome {
         if (indices.size() != variable.getParents().size()) {
             throw new IllegalArgumentException("Not all parents are present in the given variables");
         }
-        // get the factor
-        Factor factor = variable.getFactor();
-        // get the probability
         List<VariableOutcome> vars = new ArrayList<>();
         for (int index : indices) {
             vars.add(given.get(index));
         }
         vars.add(this);
-        // get the probability from the factor
-        return factor.getProbability(vars);
+        return vars;
     }
 
     @Override
@@ -0,0 +1,116 @@
+package bayesnet;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link FactorKernels} with the incubating Vector API, in the preferred vector shape of the CPU. Each loop runs
+ * over whole vectors, then over the remaining rows one by one. Only loaded if the module {@code jdk.incubator.vector}
+ * is present.
+ */
+final class VectorFactorKernels extends FactorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void multiply(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aFrom + i)
+                    .mul(DoubleVector.fromArray(SPECIES, b, bFrom + i))
+                    .intoArray(out, outFrom + i);
+        }
+        for (; i < length; i++) {
+            out[outFrom + i] = a[aFrom + i] * b[bFrom + i];
+        }
+    }
+
+    @Override
+    void multiply(double a, double[] b, int bFrom, double[] out, int outFrom, int length) {
+        int i = 0;
+        if (length >= SPECIES.length()) {
+            DoubleVector broadcast = DoubleVector.broadcast(SPECIES, a);
+            for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+                broadcast.mul(DoubleVector.fromArray(SPECIES, b, bFrom + i)).intoArray(out, outFrom + i);
+            }
+        }
+        for (; i < length; i++) {
+            out[outFrom + i] = a * b[bFrom + i];
+        }
+    }
+
+    @Override
+    void add(double[] a, int aFrom, double[] b, int bFrom, double[] out, int outFrom, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aFrom + i)
+                    .add(DoubleVector.fromArray(SPECIES, b, bFrom + i))
+                    .intoArray(out, outFrom + i);
+        }
+        for (; i < length; i++) {
+            out[outFrom + i] = a[aFrom + i] + b[bFrom + i];
+        }
+    }
+
+    @Override
+    void add(double a, double[] b, int bFrom, double[] out, int outFrom, int length) {
+        int i = 0;
+        if (length >= SPECIES.length()) {
+            DoubleVector broadcast = DoubleVector.broadcast(SPECIES, a);
+            for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+                broadcast.add(DoubleVector.fromArray(SPECIES, b, bFrom + i)).intoArray(out, outFrom + i);
+            }
+        }
+        for (; i < length; i++) {
+            out[outFrom + i] = a + b[bFrom + i];
+        }
+    }
+
+    @Override
+    void addTo(double[] source, int sourceFrom, double[] target, int targetFrom, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, target, targetFrom + i)
+                    .add(DoubleVector.fromArray(SPECIES, source, sourceFrom + i))
+                    .intoArray(target, targetFrom + i);
+        }
+        for (; i < length; i++) {
+            target[targetFrom + i] += source[sourceFrom + i];
+        }
+    }
+
+    @Override
+    double sum(double[] values, int from, int to) {
+        int length = to - from;
+        int i = 0;
+        double sum = 0.0;
+        if (length >= SPECIES.length()) {
+            // one partial sum per lane, added up at the end
+            DoubleVector sums = DoubleVector.zero(SPECIES);
+            for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+                sums = sums.add(DoubleVector.fromArray(SPECIES, values, from + i));
+            }
+            sum = sums.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += values[from + i];
+        }
+        return sum;
+    }
+
+    @Override
+    void divide(double[] values, double divisor, double[] out) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(values.length); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).div(divisor).intoArray(out, i);
+        }
+        for (; i < values.length; i++) {
+            out[i] = values[i] / divisor;
+        }
+    }
+
+    @Override
+    String name() {
+        return SPECIES.toString();
+    }
+}
@@ -0,0 +1,446 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBayesNet {
+
+    private static final List<String> QUERIES = Arrays.asList(
+            "P(B=F,E=T,A=T,M=T,J=F)",
+            "P(B=T|J=T,M=T),1",
+            "P(B=T|J=T,M=T),2",
+            "P(B=T|J=T,M=T),3",
+            "P(J=T|B=T),1",
+            "P(J=T|B=T),2",
+            "P(J=T|B=T),3");
+
+    @Test
+    void testAlarmQueries() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        // the expected answers from output.txt
+        assertResult(bayesNet.answerQuery(QUERIES.get(0)), 0.00004, 0, 4);
+        assertResult(bayesNet.answerQuery(QUERIES.get(1)), 0.28417, 7, 32);
+        assertResult(bayesNet.answerQuery(QUERIES.get(2)), 0.28417, 7, 16);
+        assertResult(bayesNet.answerQuery(QUERIES.get(3)), 0.28417, 7, 16);
+        assertResult(bayesNet.answerQuery(QUERIES.get(4)), 0.84902, 15, 64);
+        assertResult(bayesNet.answerQuery(QUERIES.get(5)), 0.84902, 7, 12);
+        assertResult(bayesNet.answerQuery(QUERIES.get(6)), 0.84902, 5, 8);
+    }
+
+    @Test
+    void testConcurrentQueries() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        List<QueryResult> expected = new ArrayList<>();
+        for (String query : QUERIES) {
+            expected.add(bayesNet.answerQuery(query));
+        }
+
+        // answer the same queries from several threads at once, the counts must not mix
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<QueryResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 100 * QUERIES.size(); i++) {
+                String query = QUERIES.get(i % QUERIES.size());
+                futures.add(executor.submit(() -> bayesNet.answerQuery(query)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                QueryResult result = futures.get(i).get();
+                QueryResult expectedResult = expected.get(i % QUERIES.size());
+                assertResult(result, expectedResult.getProbability(), expectedResult.getSumCount(), expectedResult.getProductCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPlanCache() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+
+        // same shape, different outcomes: planned once, and the same answers as planning each query on a fresh network
+        String[] queries = {"P(B=T|J=T,M=T),3", "P(B=F|J=T,M=F),3", "P(B=T|J=F,M=F),3"};
+        for (String query : queries) {
+            QueryResult expected = BifXmlLoader.load("alarm_net.xml").answerQuery(query);
+            assertResult(bayesNet.answerQuery(query), expected.getProbability(), expected.getSumCount(), expected.getProductCount());
+        }
+        assertEquals(1, bayesNet.getPlanCache().getMisses());
+        assertEquals(2, bayesNet.getPlanCache().getHits());
+
+        // a different method is a different shape
+        bayesNet.answerQuery("P(B=T|J=T,M=T),2");
+        assertEquals(2, bayesNet.getPlanCache().getMisses());
+        assertEquals(2, bayesNet.getPlanCache().size());
+
+        // a plan computed before the cache was cleared is not added afterwards
+        PlanCache planCache = bayesNet.getPlanCache();
+        long generation = planCache.getGeneration();
+        bayesNet.setDSeparationPruning(true);
+        planCache.put("stale", QueryPlan.junctionTree('4'), generation);
+        assertEquals(0, planCache.size());
+        planCache.put("fresh", QueryPlan.junctionTree('4'), planCache.getGeneration());
+        assertEquals(1, planCache.size());
+    }
+
+    @Test
+    void testAnswerQueries() throws Exception {
+        // queries that share their evidence, in any order, mixed with queries of other methods
+        List<String> queries = new ArrayList<>(QUERIES);
+        for (String evidence : new String[]{"B0=v3,C2=v1", "A2=T,B3=T", "C2=v1,B0=v3"}) {
+            for (String query : new String[]{"D1=T", "D1=F", "A1=T", "C3=F", "B1=T", "A1=F,C3=T"}) {
+                queries.add("P(" + query + "|" + evidence + "),2");
+                queries.add("P(" + query + "|" + evidence + "),3");
+            }
+        }
+        queries.add("P(D1=T|B0=v3,C2=v1),1");
+        queries.add("P(A1=T),3"); // a direct lookup
+
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        BayesNet bigNet = BifXmlLoader.load("big_net.xml");
+        List<QueryResult> alarmResults = bayesNet.answerQueries(QUERIES);
+        List<QueryResult> results = bigNet.answerQueries(queries.subList(QUERIES.size(), queries.size()));
+        for (int i = 0; i < queries.size(); i++) {
+            // the counts are the ones of answering each query alone
+            boolean alarm = i < QUERIES.size();
+            QueryResult expected = (alarm ? bayesNet : bigNet).answerQuery(queries.get(i));
+            QueryResult result = alarm ? alarmResults.get(i) : results.get(i - QUERIES.size());
+            assertEquals(expected.getProbability(), result.getProbability(), 1e-12, queries.get(i));
+            assertEquals(expected.getSumCount(), result.getSumCount(), queries.get(i));
+            assertEquals(expected.getProductCount(), result.getProductCount(), queries.get(i));
+            assertEquals(expected.getPrunedFactorCount(), result.getPrunedFactorCount(), queries.get(i));
+        }
+
+        // the executor groups the queries the same way
+        try (BatchQueryExecutor executor = new BatchQueryExecutor(bigNet, 4)) {
+            List<QueryResult> executorResults = executor.answerAll(queries.subList(QUERIES.size(), queries.size()));
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i).getProbability(), executorResults.get(i).getProbability());
+                assertEquals(results.get(i).getProductCount(), executorResults.get(i).getProductCount());
+            }
+        }
+        assertNull(BayesNet.evidenceGroup("P(B=T|J=T,M=T),1"));
+        assertEquals("J=T,M=T", BayesNet.evidenceGroup("P(B=T|M=T,J=T),2"));
+        assertEquals("", BayesNet.evidenceGroup("P(B=T),3"));
+        assertEquals("B,E,|3", BayesNet.queryGroup("P(B=T, E=F|J=T),3"));
+        assertEquals("C1,|2", BayesNet.queryGroup("P(C1=T),2"));
+
+        // queries with the same evidence form one large group, which the executor splits into chunks
+        List<String> sameEvidence = new ArrayList<>();
+        for (String variable : Arrays.asList("A1", "B1", "C1", "A2", "B2", "A3", "B3", "C3")) {
+            for (String method : Arrays.asList("2", "3")) {
+                for (int i = 0; i < 5; i++) {
+                    sameEvidence.add("P(" + variable + "=" + (i % 2 == 0 ? "T" : "F") + "|D1=T)," + method);
+                }
+            }
+        }
+        try (BatchQueryExecutor executor = new BatchQueryExecutor(bigNet, 4)) {
+            List<QueryResult> executorResults = executor.answerAll(sameEvidence);
+            for (int i = 0; i < sameEvidence.size(); i++) {
+                QueryResult expected = bigNet.answerQuery(sameEvidence.get(i));
+                assertEquals(expected.getProbability(), executorResults.get(i).getProbability(), 1e-12, sameEvidence.get(i));
+                assertEquals(expected.getSumCount(), executorResults.get(i).getSumCount(), sameEvidence.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testEnumeration() throws Exception {
+        BayesNet bigNet = BifXmlLoader.load("big_net.xml");
+        // 8 hidden binary variables and a binary query variable: 512 rows of 11 CPT entries
+        QueryResult result = bigNet.answerQuery("P(D1=T|B0=v3,C2=v1),1");
+        assertEquals(bigNet.answerQuery("P(D1=T|B0=v3,C2=v1),3").getProbability(), result.getProbability(), 1e-12);
+        assertEquals(512 * 10, result.getProductCount());
+
+        // several query variables: 4 query rows, 6 binary and 2 ternary hidden variables
+        result = bigNet.answerQuery("P(C3=F,A1=T|B1=T),1");
+        assertEquals(bigNet.answerQuery("P(C3=F,A1=T|B1=T),3").getProbability(), result.getProbability(), 1e-12);
+        assertEquals(4 * 576 * 10, result.getProductCount());
+    }
+
+    @Test
+    void testParallelEnumeration() throws Exception {
+        // a chain of 18 binary variables: 2^17 rows, split into ranges that are summed in parallel
+        BayesNet chain = new BayesNet();
+        for (int i = 0; i < 18; i++) {
+            chain.addVariable("X" + i, Arrays.asList("T", "F"));
+        }
+        chain.addDependency("X0", new ArrayList<>(), new double[]{0.3, 0.7});
+        for (int i = 1; i < 18; i++) {
+            double p = 0.1 + 0.8 * i / 18;
+            chain.addDependency("X" + i, Arrays.asList("X" + (i - 1)), new double[]{p, 1 - p, 1 - p / 2, p / 2});
+        }
+        String query = "P(X17=T|X0=F),1";
+        QueryResult expected = chain.answerQuery(query);
+        assertEquals(chain.answerQuery("P(X17=T|X0=F),3").getProbability(), expected.getProbability(), 1e-12);
+        assertEquals((1L << 17) * 17, expected.getProductCount());
+        assertEquals((1L << 16) - 1 + (1L << 16) - 1 + 1, expected.getSumCount()); // every row is positive
+
+        // the same answer and counts whatever the number of threads
+        for (int parallelism : new int[]{1, 3}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                QueryResult result = pool.submit(() -> chain.answerQuery(query)).get();
+                assertEquals(expected.getProbability(), result.getProbability());
+                assertEquals(expected.getSumCount(), result.getSumCount());
+                assertEquals(expected.getProductCount(), result.getProductCount());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testLogSpace() throws Exception {
+        // a chain of 1200 binary variables: a row of the enumeration multiplies 1200 CPT entries, which underflows
+        BayesNet chain = new BayesNet();
+        int n = 1200;
+        for (int i = 0; i < n; i++) {
+            chain.addVariable("X" + i, Arrays.asList("T", "F"));
+        }
+        chain.addDependency("X0", new ArrayList<>(), new double[]{0.3, 0.7});
+        for (int i = 1; i < n; i++) {
+            chain.addDependency("X" + i, Arrays.asList("X" + (i - 1)), new double[]{0.4, 0.6, 0.6, 0.4});
+        }
+        StringBuilder evidence = new StringBuilder();
+        StringBuilder joint = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i < 599 || i > 601) {
+                evidence.append(evidence.length() == 0 ? "" : ",").append('X').append(i).append(i % 3 == 0 ? "=T" : "=F");
+            }
+            joint.append(joint.length() == 0 ? "" : ",").append('X').append(i).append("=T");
+        }
+        String query = "P(X600=T|" + evidence + ")";
+        // the eliminations only keep the factors with more than one row, which do not underflow
+        double expected = chain.answerQuery(query + ",3").getProbability();
+        QueryResult linear = chain.answerQuery(query + ",1");
+        assertTrue(Double.isNaN(linear.getProbability())); // 0/0
+        assertEquals(0.0, chain.answerQuery("P(" + joint + ")").getProbability());
+
+        chain.setLogSpace(true);
+        for (char method : new char[]{'1', '2', '3'}) {
+            QueryResult result = chain.answerQuery(query + "," + method);
+            assertEquals(expected, result.getProbability(), 1e-12, "method " + method);
+            if (method == '1') {
+                // the rows that underflow to 0 in linear space are not counted as sums
+                assertTrue(result.getSumCount() > linear.getSumCount());
+                assertEquals(linear.getProductCount(), result.getProductCount());
+            }
+        }
+        QueryResult jointResult = chain.answerQuery("P(" + joint + ")");
+        assertEquals(0.0, jointResult.getProbability());
+        assertEquals(Math.log(0.3) + (n - 1) * Math.log(0.4), jointResult.getLogProbability(), 1e-9);
+        assertEquals(n - 1, jointResult.getProductCount());
+
+        // the same answers and counts as linear space on a small network, also with a memo
+        BayesNet alarm = BifXmlLoader.load("alarm_net.xml");
+        BayesNet logAlarm = BifXmlLoader.load("alarm_net.xml");
+        logAlarm.setLogSpace(true);
+        InferenceSession session = new InferenceSession(logAlarm);
+        session.addEvidence("J", "T");
+        session.addEvidence("M", "T");
+        for (String alarmQuery : new String[]{"P(B=T|J=T,M=T),1", "P(B=T|J=T,M=T),2", "P(B=T|J=T,M=T),3", "P(B=T,E=F,A=T,J=T,M=F)"}) {
+            QueryResult result = alarm.answerQuery(alarmQuery);
+            QueryResult logResult = logAlarm.answerQuery(alarmQuery);
+            assertEquals(result.getProbability(), logResult.getProbability(), 1e-12, alarmQuery);
+            assertEquals(result.getSumCount(), logResult.getSumCount(), alarmQuery);
+            assertEquals(result.getProductCount(), logResult.getProductCount(), alarmQuery);
+        }
+        assertEquals(alarm.answerQuery("P(B=T|J=T,M=T),3").getProbability(), session.query("P(B=T),3").getProbability(), 1e-12);
+    }
+
+    @Test
+    void testSparseFactors() throws Exception {
+        // four random roots, then each variable is the XOR or the OR of three variables before it: most rows are 0
+        BayesNet gates = new BayesNet();
+        BayesNet sparseGates = new BayesNet();
+        for (BayesNet bayesNet : Arrays.asList(gates, sparseGates)) {
+            for (int i = 0; i < 16; i++) {
+                bayesNet.addVariable("X" + i, Arrays.asList("T", "F"));
+            }
+            for (int i = 0; i < 4; i++) {
+                bayesNet.addDependency("X" + i, new ArrayList<>(), new double[]{0.2 + 0.2 * i, 0.8 - 0.2 * i});
+            }
+            for (int i = 4; i < 16; i++) {
+                double[] table = new double[16];
+                for (int row = 0; row < table.length; row += 2) {
+                    int trueParents = 3 - Integer.bitCount(row >> 1);
+                    boolean value = i % 2 == 0 ? trueParents % 2 == 1 : trueParents > 0;
+                    table[value ? row : row + 1] = 1.0;
+                }
+                bayesNet.addDependency("X" + i, Arrays.asList("X" + (i - 4), "X" + (i - 3), "X" + (i - 1)), table);
+            }
+        }
+        sparseGates.setSparseFactors(true);
+        assertTrue(sparseGates.isSparseFactors());
+
+        List<String> queries = Arrays.asList("P(X15=T|X0=T,X7=F),2", "P(X15=T|X0=T,X7=F),3", "P(X9=F|X1=F,X14=T),2", "P(X2=T,X8=T|X12=T),2");
+        List<QueryResult> batch = sparseGates.answerQueries(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            QueryResult dense = gates.answerQuery(query);
+            QueryResult sparse = sparseGates.answerQuery(query);
+            assertEquals(dense.getProbability(), sparse.getProbability(), 1e-12, query);
+            assertTrue(sparse.getProductCount() <= dense.getProductCount(), query);
+            assertTrue(sparse.getPeakFactorSize() <= dense.getPeakFactorSize(), query);
+            // a batch answers the queries one by one, with the same counts
+            assertEquals(sparse.getProbability(), batch.get(i).getProbability(), query);
+            assertEquals(sparse.getProductCount(), batch.get(i).getProductCount(), query);
+        }
+        // method 2 eliminates in name order, with large factors
+        QueryResult dense = gates.answerQuery(queries.get(0));
+        QueryResult sparse = sparseGates.answerQuery(queries.get(0));
+        assertTrue(sparse.getProductCount() + sparse.getSumCount() < (dense.getProductCount() + dense.getSumCount()) / 2);
+
+        // the memo of a session keeps the sparse factors
+        InferenceSession session = new InferenceSession(sparseGates);
+        session.addEvidence("X0", "T");
+        session.addEvidence("X7", "F");
+        assertEquals(dense.getProbability(), session.query("P(X15=T),2").getProbability(), 1e-12);
+    }
+
+    @Test
+    void testJunctionTree() throws Exception {
+        assertJunctionTreeMatchesMethod3("alarm_net.xml", "J=T,M=T", "B=T", "A=F,E=T", "");
+        assertJunctionTreeMatchesMethod3("big_net.xml", "B0=v3,C2=v1", "D1=T", "A1=T,B2=F,C3=T", "");
+
+        // a query is charged for its marginalization, and the calibration of its evidence is counted apart, cached or
+        // not, so the counts do not depend on the order in which the threads answer the queries
+        BayesNet bigNet = BifXmlLoader.load("big_net.xml");
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            queries.add(i % 2 == 0 ? "P(A1=T|D1=T),4" : "P(C2=v1|A2=T,B0=v2),4");
+        }
+        QueryResult first = bigNet.answerQuery(queries.get(0));
+        QueryResult cached = bigNet.answerQuery(queries.get(0));
+        assertEquals(first.getSumCount(), cached.getSumCount());
+        assertEquals(first.getProductCount(), cached.getProductCount());
+        assertEquals(first.getCalibrationSumCount(), cached.getCalibrationSumCount());
+        assertEquals(first.getCalibrationProductCount(), cached.getCalibrationProductCount());
+        assertTrue(cached.getCalibrationProductCount() > 10 * cached.getProductCount());
+        List<QueryResult> sequential = BifXmlLoader.load("big_net.xml").answerQueries(queries);
+        try (BatchQueryExecutor executor = new BatchQueryExecutor(BifXmlLoader.load("big_net.xml"), 4)) {
+            List<QueryResult> parallel = executor.answerAll(queries);
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(sequential.get(i).getSumCount(), parallel.get(i).getSumCount(), queries.get(i));
+                assertEquals(sequential.get(i).getProductCount(), parallel.get(i).getProductCount(), queries.get(i));
+                assertEquals(sequential.get(i).getCalibrationProductCount(), parallel.get(i).getCalibrationProductCount(), queries.get(i));
+            }
+        }
+
+        // the ordering search triangulates the tree
+        bigNet.setOrderingSearch(new OrderingSearch(50));
+        assertEquals(first.getProbability(), bigNet.answerQuery(queries.get(0)).getProbability(), 1e-12);
+    }
+
+    @Test
+    void testDSeparationPruning() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        // M is not an ancestor of the query or the evidence
+        QueryResult ancestral = bayesNet.answerQuery("P(J=T|A=T,B=T),2");
+        assertEquals(1, ancestral.getPrunedFactorCount());
+
+        // given A, J is d-separated from everything else, so only the CPT of J is needed
+        bayesNet.setDSeparationPruning(true);
+        QueryResult pruned = bayesNet.answerQuery("P(J=T|A=T,B=T),2");
+        assertEquals(4, pruned.getPrunedFactorCount());
+        assertEquals(ancestral.getProbability(), pruned.getProbability(), 1e-12);
+        assertEquals(0.9, pruned.getProbability(), 1e-12);
+        assertEquals(0, pruned.getProductCount());
+
+        // the same answers, with no more operations
+        BayesNet bigNet = BifXmlLoader.load("big_net.xml");
+        BayesNet prunedBigNet = BifXmlLoader.load("big_net.xml");
+        prunedBigNet.setDSeparationPruning(true);
+        for (String query : new String[]{"P(A1=T|D1=T,B2=F),3", "P(C2=v1|A2=T,B0=v2),3", "P(B3=T|C1=T,A1=F),2", "P(D1=T|C3=T,B1=T),2"}) {
+            QueryResult expected = bigNet.answerQuery(query);
+            QueryResult result = prunedBigNet.answerQuery(query);
+            assertEquals(expected.getProbability(), result.getProbability(), 1e-12, query);
+            assertTrue(result.getProductCount() <= expected.getProductCount(), query);
+            assertTrue(result.getPrunedFactorCount() >= expected.getPrunedFactorCount(), query);
+        }
+    }
+
+    @Test
+    void testAncestors() {
+        // A -> B -> C, and D
+        BayesNet bayesNet = new BayesNet();
+        for (String name : new String[]{"A", "B", "C", "D"}) {
+            bayesNet.addVariable(name, Arrays.asList("T", "F"));
+        }
+        bayesNet.addDependency("A", new ArrayList<>(), new double[]{0.3, 0.7});
+        bayesNet.addDependency("B", Arrays.asList("A"), new double[]{0.9, 0.1, 0.2, 0.8});
+        bayesNet.addDependency("C", Arrays.asList("B"), new double[]{0.6, 0.4, 0.5, 0.5});
+        bayesNet.addDependency("D", new ArrayList<>(), new double[]{0.5, 0.5});
+        Variable a = bayesNet.variables.get("A");
+        Variable c = bayesNet.variables.get("C");
+        Variable d = bayesNet.variables.get("D");
+
+        // planning a query indexes the network
+        bayesNet.answerQuery("P(A=T|C=T),3");
+        assertNotNull(c.getAncestors());
+        assertTrue(c.isDescendantOf(a));
+        assertFalse(a.isDescendantOf(c));
+        assertFalse(c.isDescendantOf(d));
+
+        // changing the structure drops the ancestors until the next query
+        bayesNet.addDependency("C", Arrays.asList("B", "D"), new double[]{0.6, 0.4, 0.5, 0.5, 0.1, 0.9, 0.3, 0.7});
+        assertNull(c.getAncestors());
+        assertTrue(c.isDescendantOf(d));
+        bayesNet.answerQuery("P(A=T|C=T),3");
+        assertNotNull(c.getAncestors());
+        assertTrue(c.isDescendantOf(d));
+        assertTrue(c.isDescendantOf(a));
+
+        // changing a grandparent edge directly drops the ancestors of the grandchild too
+        Variable b = bayesNet.variables.get("B");
+        b.setParents(new ArrayList<>());
+        assertNull(c.getAncestors());
+        assertFalse(c.isDescendantOf(a));
+        assertTrue(c.isDescendantOf(d));
+    }
+
+    /**
+     * Asks every outcome of every other variable under each evidence set with methods 3 and 4, and compares the answers.
+     */
+    private static void assertJunctionTreeMatchesMethod3(String fileName, String... evidenceSets) throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load(fileName);
+        for (String evidence : evidenceSets) {
+            List<String> evidenceVars = new ArrayList<>();
+            for (String assignment : evidence.split(",")) {
+                if (!assignment.isEmpty()) {
+                    evidenceVars.add(assignment.split("=")[0]);
+                }
+            }
+            for (Variable variable : bayesNet.variables.values()) {
+                List<String> parents = new ArrayList<>();
+                variable.getParents().forEach(parent -> parents.add(parent.getName()));
+                // the direct CPT lookup needs all the parents as evidence
+                if (evidenceVars.contains(variable.getName()) || (parents.containsAll(evidenceVars) && !evidenceVars.containsAll(parents))) {
+                    continue;
+                }
+                for (String outcome : variable.getOutcomes()) {
+                    String query = "P(" + variable.getName() + "=" + outcome + (evidence.isEmpty() ? "" : "|" + evidence) + "),";
+                    assertEquals(bayesNet.answerQuery(query + "3").getProbability(), bayesNet.answerQuery(query + "4").getProbability(), 1e-9, query);
+                }
+            }
+        }
+    }
+
+    private static void assertResult(QueryResult result, double probability, long sumCount, long productCount) {
+        assertEquals(probability, result.getProbability(), 0.000005);
+        assertEquals(sumCount, result.getSumCount());
+        assertEquals(productCount, result.getProductCount());
+    }
+}
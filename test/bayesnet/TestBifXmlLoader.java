@@ -0,0 +1,90 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestBifXmlLoader {
+
+    @Test
+    void testParseDouble() {
+        String[] numbers = {"0.95", "0.05", "1", "0", "-0", "0.001", ".5", "5.", "+0.25", "-1.5", "1e-3", "2.5E+10",
+                "0.1234567890123456789", "123456789012345678901234", "9007199254740993", "1e23", "4.9e-324", "1e400",
+                "0.30000000000000004", "NaN", "Infinity", "-Infinity", "0x1p3"};
+        for (String number : numbers) {
+            assertParsesLikeJdk(number);
+        }
+
+        // short decimals, like the entries of a table, and random doubles
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            assertParsesLikeJdk(String.valueOf(random.nextInt(100000) / 10000.0));
+            assertParsesLikeJdk(random.nextInt(1000000) + "e" + (random.nextInt(60) - 30));
+            assertParsesLikeJdk(Double.toString(random.nextDouble()));
+            assertParsesLikeJdk(Double.toString(Double.longBitsToDouble(random.nextLong())));
+        }
+
+        for (String number : new String[]{"", "-", ".", "e5", "1e", "1.2.3", "0.5x"}) {
+            char[] chars = number.toCharArray();
+            assertThrows(NumberFormatException.class, () -> TableParser.parseDouble(chars, 0, chars.length), number);
+        }
+    }
+
+    private static void assertParsesLikeJdk(String number) {
+        char[] chars = ("  " + number + " ").toCharArray();
+        double expected = Double.parseDouble(number);
+        double actual = TableParser.parseDouble(chars, 2, 2 + number.length());
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), number);
+    }
+
+    @Test
+    void testTableParserChunks() {
+        // a number split between two chunks, and any whitespace between the numbers
+        String table = " 0.1 0.9\n\t0.25  0.75 ";
+        double[] expected = {0.1, 0.9, 0.25, 0.75};
+        for (int split = 0; split <= table.length(); split++) {
+            TableParser parser = new TableParser();
+            char[] chars = table.toCharArray();
+            parser.append(chars, 0, split);
+            parser.append(chars, split, chars.length - split);
+            assertArrayEquals(expected, parser.finish(), "split at " + split);
+        }
+    }
+
+    @Test
+    void testLoad() throws Exception {
+        // a definition before the variables it refers to, and elements the loader does not use
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<BIF VERSION=\"0.3\"><NETWORK><NAME>test</NAME>\n"
+                + "<DEFINITION><FOR>B</FOR><GIVEN>A</GIVEN><TABLE>\n0.9 0.1\n0.2 0.8\n</TABLE></DEFINITION>\n"
+                + "<VARIABLE TYPE=\"nature\"><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME>"
+                + "<PROPERTY>position = (0, 0)</PROPERTY></VARIABLE>\n"
+                + "<VARIABLE TYPE=\"nature\"><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>\n"
+                + "<DEFINITION><FOR>A</FOR><TABLE><![CDATA[0.3 0.7]]></TABLE></DEFINITION>\n"
+                + "</NETWORK></BIF>";
+        BayesNet bayesNet = BifXmlLoader.load(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        Variable a = bayesNet.variables.get("A");
+        Variable b = bayesNet.variables.get("B");
+        assertEquals(Arrays.asList("T", "F"), a.getOutcomes());
+        assertEquals(Arrays.asList(a), b.getParents());
+        assertEquals(0.2, b.getFactor().getProbability(Arrays.asList(new VariableOutcome(a, "F"), new VariableOutcome(b, "T"))));
+        assertEquals(0.7 * 0.2, bayesNet.answerQuery("P(A=F,B=T)").getProbability(), 1e-12);
+    }
+
+    @Test
+    void testLoadExampleNetworks() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        assertEquals(5, bayesNet.variables.size());
+        Variable a = bayesNet.variables.get("A");
+        assertEquals(Arrays.asList(bayesNet.variables.get("E"), bayesNet.variables.get("B")), a.getParents());
+        assertEquals(11, BifXmlLoader.load("big_net.xml").variables.size());
+    }
+}
@@ -1,3 +1,5 @@
+package bayesnet;
+
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -5,7 +7,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestFactor {
 
@@ -166,4 +173,122 @@ public class TestFactor {
         assertEquals(0.8, newFactor.getProbability(ListOf(new VariableOutcome(C, "F"), new VariableOutcome(D, "F"))), 0.0001);
     }
 
+    @Test
+    void joinTooLargeTest() {
+        List<String> outcomes = ListOf("T", "F");
+        List<Variable> first = new ArrayList<>();
+        List<Variable> second = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            first.add(new Variable("X" + i, outcomes));
+            second.add(new Variable("Y" + i, outcomes));
+        }
+        Factor f1 = new Factor(first, new double[1 << 16]);
+        Factor f2 = new Factor(second, new double[1 << 16]);
+
+        // 2^32 rows do not fit in an array, the join fails before allocating
+        Counter counter = new Counter();
+        assertThrows(IllegalStateException.class, () -> Factor.join(f1, f2, counter));
+        assertEquals(0, counter.getProductCounter());
+    }
+
+    @Test
+    void logSpaceTest() {
+        List<String> outcomes = ListOf("T", "F", "M");
+        Variable A = new Variable("A", outcomes);
+        Variable B = new Variable("B", outcomes);
+        Variable C = new Variable("C", outcomes);
+        double[] first = new double[9];
+        double[] second = new double[9];
+        for (int i = 0; i < 9; i++) {
+            first[i] = (i + 1) / 10.0;
+            second[i] = i == 4 ? 0.0 : 1.0 / (i + 2);
+        }
+        Factor f1 = new Factor(ListOf(A, B), first);
+        Factor f2 = new Factor(ListOf(B, C), second);
+
+        Counter counter = new Counter();
+        Counter logCounter = new Counter();
+        Factor linear = Factor.join(f1, f2, counter).eliminate(B, counter).normalize(counter);
+        Factor log = Factor.join(f1.toLogSpace(), f2, logCounter).eliminate(B, logCounter).normalize(logCounter);
+        assertTrue(log.isLogSpace());
+        for (String a : outcomes) {
+            for (String c : outcomes) {
+                List<VariableOutcome> assignment = ListOf(new VariableOutcome(A, a), new VariableOutcome(C, c));
+                assertEquals(linear.getProbability(assignment), log.getProbability(assignment), 1e-12);
+                assertEquals(Math.log(linear.getProbability(assignment)), log.getLogProbability(assignment), 1e-12);
+            }
+        }
+        assertEquals(counter.getSumCounter(), logCounter.getSumCounter());
+        assertEquals(counter.getProductCounter(), logCounter.getProductCounter());
+
+        // summing out only zero rows stays at log(0)
+        Factor zeros = new Factor(ListOf(A), new double[]{0.0, 0.0, 0.0}).toLogSpace();
+        assertEquals(Double.NEGATIVE_INFINITY, Factor.join(zeros, f1).eliminate(A).getLogProbability(ListOf(new VariableOutcome(B, "T"))));
+        assertSame(f1.toLogSpace(), f1.toLogSpace());
+    }
+
+    @Test
+    void sparseTest() {
+        List<Variable> variables = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            variables.add(new Variable("V" + i, ListOf("T", "F")));
+        }
+        // one row in 8 is non-zero
+        double[] oneHot = new double[128];
+        for (int row = 0; row < oneHot.length; row += 8) {
+            oneHot[row] = row + 1;
+        }
+        double[] table = new double[32];
+        for (int row = 0; row < table.length; row++) {
+            table[row] = 1.0 / (row + 1);
+        }
+        Factor f1 = new Factor(variables.subList(0, 7), oneHot);
+        Factor f2 = new Factor(variables.subList(5, 10), table);
+        assertFalse(f1.isSparse());
+        assertTrue(f1.allowSparse().isSparse());
+        assertEquals(16, f1.allowSparse().getStoredSize());
+        assertFalse(f2.allowSparse().isSparse());
+
+        List<VariableOutcome> evidence = ListOf(new VariableOutcome(variables.get(0), "F"));
+        for (boolean firstSparse : new boolean[]{true, false}) {
+            Counter counter = new Counter();
+            Counter sparseCounter = new Counter();
+            Factor dense = firstSparse ? Factor.join(f1, f2, counter) : Factor.join(f2, f1, counter);
+            Factor sparse = firstSparse ? Factor.join(f1.allowSparse(), f2, sparseCounter) : Factor.join(f2, f1.allowSparse(), sparseCounter);
+            assertTrue(sparse.isSparse());
+            assertEquals(dense.getVariables(), sparse.getVariables());
+            assertArrayEquals(dense.getValues(), sparse.getValues(), 1e-12);
+
+            dense = dense.eliminate(variables.get(6), counter).setEvidences(evidence).normalize(counter);
+            sparse = sparse.eliminate(variables.get(6), sparseCounter).setEvidences(evidence).normalize(sparseCounter);
+            assertEquals(dense.getVariables(), sparse.getVariables());
+            assertArrayEquals(dense.getValues(), sparse.getValues(), 1e-12);
+            assertEquals(256, dense.getSize());
+            assertEquals(256, sparse.getSize());
+            // only the products and sums of the non-zero rows
+            assertEquals(16 * 8, sparseCounter.getProductCounter());
+            assertTrue(sparseCounter.getSumCounter() < counter.getSumCounter());
+        }
+
+        // sparse and log space
+        Factor log = Factor.join(f1.allowSparse().toLogSpace(), f2).eliminate(variables.get(9)).normalize();
+        Factor linear = Factor.join(f1, f2).eliminate(variables.get(9)).normalize();
+        assertTrue(log.isSparse());
+        assertTrue(log.isLogSpace());
+        assertArrayEquals(linear.getValues(), exp(log.getValues()), 1e-12);
+
+        // a factor without non-zero rows normalizes to 0/0, like a dense one
+        Factor zeros = new Factor(variables.subList(0, 6), new double[64]).allowSparse();
+        assertEquals(0, zeros.getStoredSize());
+        assertTrue(Double.isNaN(zeros.normalize().getValues()[0]));
+    }
+
+    private static double[] exp(double[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Math.exp(values[i]);
+        }
+        return result;
+    }
+
 }
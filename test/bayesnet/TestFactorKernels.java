@@ -0,0 +1,109 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFactorKernels {
+
+    @Test
+    void testVectorMatchesScalar() {
+        // the tests run with --add-modules jdk.incubator.vector
+        assertInstanceOf(VectorFactorKernels.class, FactorKernels.INSTANCE);
+        FactorKernels scalar = new FactorKernels.Scalar();
+        FactorKernels vector = new VectorFactorKernels();
+
+        Random random = new Random(42);
+        for (int length : new int[]{0, 1, 3, 7, 8, 9, 31, 64, 1000}) {
+            double[] a = randomArray(length + 5, random);
+            double[] b = randomArray(length + 5, random);
+            double[] expected = new double[length + 5];
+            double[] actual = new double[length + 5];
+
+            scalar.multiply(a, 1, b, 2, expected, 3, length);
+            vector.multiply(a, 1, b, 2, actual, 3, length);
+            assertArrayEquals(expected, actual);
+            scalar.multiply(0.3, b, 4, expected, 0, length);
+            vector.multiply(0.3, b, 4, actual, 0, length);
+            assertArrayEquals(expected, actual);
+            scalar.add(a, 5, b, 0, expected, 2, length);
+            vector.add(a, 5, b, 0, actual, 2, length);
+            assertArrayEquals(expected, actual);
+            scalar.add(-1.5, a, 0, expected, 5, length);
+            vector.add(-1.5, a, 0, actual, 5, length);
+            assertArrayEquals(expected, actual);
+            scalar.addTo(a, 2, expected, 1, length);
+            vector.addTo(a, 2, actual, 1, length);
+            assertArrayEquals(expected, actual);
+            scalar.divide(a, 3.0, expected);
+            vector.divide(a, 3.0, actual);
+            assertArrayEquals(expected, actual);
+            // the lanes add the rows in another order
+            assertEquals(scalar.sum(a, 2, 2 + length), vector.sum(a, 2, 2 + length), 1e-12 * length);
+        }
+    }
+
+    @Test
+    void testJoinRuns() {
+        List<Variable> variables = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            variables.add(new Variable("V" + i, Arrays.asList("T", "F", "M")));
+        }
+        Random random = new Random(7);
+        // the shared variables last (contiguous runs in both), first (a run in one factor), and in the middle (no runs)
+        int[][][] scopes = {
+                {{0, 1, 2, 3, 4, 5}, {4, 5}},
+                {{0, 1, 2}, {2, 3, 4, 5, 6}},
+                {{0, 1, 2, 3}, {6, 2, 7, 8}},
+                {{0, 5, 1}, {2, 5, 3}},
+        };
+        for (int[][] scope : scopes) {
+            Factor f1 = randomFactor(variables, scope[0], random);
+            Factor f2 = randomFactor(variables, scope[1], random);
+            for (Factor joined : Arrays.asList(Factor.join(f1, f2), Factor.join(f2, f1))) {
+                for (int row = 0; row < joined.getSize(); row++) {
+                    List<VariableOutcome> assignment = assignment(joined.getVariables(), row);
+                    assertEquals(f1.getProbability(assignment) * f2.getProbability(assignment), joined.getProbability(assignment), 1e-15);
+                }
+            }
+            Factor logJoined = Factor.join(f1.toLogSpace(), f2);
+            List<VariableOutcome> assignment = assignment(logJoined.getVariables(), logJoined.getSize() / 2);
+            assertEquals(Math.log(f1.getProbability(assignment)) + Math.log(f2.getProbability(assignment)),
+                    logJoined.getLogProbability(assignment), 1e-12);
+        }
+    }
+
+    private static double[] randomArray(int length, Random random) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble();
+        }
+        return values;
+    }
+
+    private static Factor randomFactor(List<Variable> variables, int[] indices, Random random) {
+        List<Variable> scope = new ArrayList<>();
+        for (int index : indices) {
+            scope.add(variables.get(index));
+        }
+        return new Factor(scope, randomArray((int) Math.pow(3, indices.length), random));
+    }
+
+    /**
+     * @return the outcomes of a row of a factor over the given variables of 3 outcomes each
+     */
+    private static List<VariableOutcome> assignment(List<Variable> variables, int row) {
+        List<VariableOutcome> assignment = new ArrayList<>();
+        for (int i = variables.size() - 1; i >= 0; i--) {
+            Variable variable = variables.get(i);
+            assignment.add(new VariableOutcome(variable, variable.getOutcomes().get(row % 3)));
+            row /= 3;
+        }
+        return assignment;
+    }
+}
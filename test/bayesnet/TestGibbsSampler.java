@@ -0,0 +1,87 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestGibbsSampler {
+
+    @Test
+    void testEstimatesMatchExactAnswers() throws Exception {
+        // P(B=T|J=T,M=T) has unlikely evidence, P(E=T|A=T,B=F) explains away
+        assertEstimatesMatch("alarm_net.xml", "P(B=T|J=T,M=T)", "P(E=T|A=T,B=F)", "P(J=T|B=T)", "P(A=T,M=F|E=T)");
+        assertEstimatesMatch("big_net.xml", "P(D1=T|B0=v3,C2=v1)", "P(A1=T|D1=T)", "P(C2=v3|A2=F,B3=T)");
+    }
+
+    private static void assertEstimatesMatch(String fileName, String... queries) throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load(fileName);
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withTargetHalfWidth(0.003));
+        for (String query : queries) {
+            double exact = bayesNet.answerQuery(query + ",3").getProbability();
+            QueryResult estimate = bayesNet.answerQuery(query + ",G");
+            assertTrue(estimate.getStandardError() > 0, query);
+            assertTrue(estimate.getRHat() <= GibbsSampler.MAX_R_HAT, query);
+            // 5 standard errors: a false alarm is very unlikely, and the seed is fixed anyway
+            assertEquals(exact, estimate.getProbability(), 5 * estimate.getStandardError(), query);
+        }
+    }
+
+    @Test
+    void testEarlyStop() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(200_000).withTargetHalfWidth(0.01));
+        QueryResult early = bayesNet.answerQuery("P(J=T|B=T),G");
+        assertTrue(early.getSampleCount() < 200_000);
+        assertTrue(1.96 * early.getStandardError() <= 0.01);
+        assertTrue(early.getProductCount() > 0);
+
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(200_000).withTargetHalfWidth(0));
+        QueryResult full = bayesNet.answerQuery("P(J=T|B=T),G");
+        assertEquals(200_000, full.getSampleCount());
+        assertTrue(full.getStandardError() < early.getStandardError());
+    }
+
+    @Test
+    void testRareQuery() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(40_000));
+        // P = 3e-7: the query indicator is constant in every chain, which is not convergence
+        QueryResult rare = bayesNet.answerQuery("P(B=T,E=T|J=F),G");
+        assertEquals(40_000, rare.getSampleCount());
+        assertTrue(Double.isNaN(rare.getRHat()));
+        assertTrue(rare.getStandardError() > 0);
+
+        // P = 9e-5 given extreme evidence: sampling goes on until enough samples match
+        bayesNet.setSamplingOptions(SamplingOptions.defaults());
+        double exact = bayesNet.answerQuery("P(B=T|E=F,J=F,M=F),3").getProbability();
+        QueryResult unlikely = bayesNet.answerQuery("P(B=T|E=F,J=F,M=F),G");
+        assertTrue(unlikely.getProbability() > 0);
+        assertEquals(exact, unlikely.getProbability(), 5 * unlikely.getStandardError());
+    }
+
+    @Test
+    void testDeterministic() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withChains(8).withThinning(2).withMaxSamples(80_000).withTargetHalfWidth(0));
+        String query = "P(A1=T|D1=T,C2=v1),G";
+        QueryResult expected = bayesNet.answerQuery(query);
+
+        // the same estimate on one thread
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            QueryResult oneThread = pool.submit(() -> bayesNet.answerQuery(query)).get();
+            assertEquals(expected.getProbability(), oneThread.getProbability());
+            assertEquals(expected.getStandardError(), oneThread.getStandardError());
+            assertEquals(expected.getRHat(), oneThread.getRHat());
+        } finally {
+            pool.shutdown();
+        }
+
+        // another seed, another estimate
+        bayesNet.setSamplingOptions(bayesNet.getSamplingOptions().withSeed(7));
+        assertTrue(expected.getProbability() != bayesNet.answerQuery(query).getProbability());
+    }
+}
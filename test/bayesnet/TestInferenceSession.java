@@ -0,0 +1,110 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestInferenceSession {
+
+    @Test
+    void testSameAnswersAsQueries() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        InferenceSession session = new InferenceSession(bayesNet);
+        String[][] observations = {{"B0", "v3"}, {"C2", "v1"}, {"A2", "T"}, {"B3", "T"}, {"C1", "T"}};
+        StringBuilder evidence = new StringBuilder();
+        for (String[] observation : observations) {
+            session.addEvidence(observation[0], observation[1]);
+            evidence.append(evidence.length() == 0 ? "" : ",").append(observation[0]).append('=').append(observation[1]);
+            for (char method : new char[]{'2', '3'}) {
+                QueryResult expected = bayesNet.answerQuery("P(D1=T|" + evidence + ")," + method);
+                QueryResult result = session.query("P(D1=T)," + method);
+                assertEquals(expected.getProbability(), result.getProbability(), evidence.toString());
+                assertTrue(result.getProductCount() <= expected.getProductCount(), evidence.toString());
+            }
+        }
+        assertTrue(session.getMemoHits() > 0);
+
+        // evidence for one query only, and the other methods
+        assertEquals(bayesNet.answerQuery("P(D1=T|B0=v3,C2=v1,A2=T,B3=T,C1=T,A1=F),3").getProbability(),
+                session.query("P(D1=T|A1=F),3").getProbability());
+        assertEquals(bayesNet.answerQuery("P(D1=T|B0=v3,C2=v1,A2=T,B3=T,C1=T),1").getProbability(),
+                session.query("P(D1=T),1").getProbability());
+    }
+
+    @Test
+    void testReuseAfterUpdates() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        InferenceSession session = new InferenceSession(bayesNet);
+        session.addEvidence("J", "T");
+        QueryResult first = session.query("P(B=T),2");
+        session.addEvidence("M", "T");
+        QueryResult second = session.query("P(B=T),2");
+        assertEquals(0.2841718353643929, second.getProbability(), 1e-9);
+
+        // back to the evidence of the first query: every intermediate factor is in the memo
+        assertTrue(session.retractEvidence("M"));
+        assertFalse(session.retractEvidence("M"));
+        QueryResult retracted = session.query("P(B=T),2");
+        assertEquals(first.getProbability(), retracted.getProbability());
+        assertTrue(retracted.getProductCount() < first.getProductCount());
+
+        // changing an observed outcome keeps its order
+        session.addEvidence("M", "F");
+        session.addEvidence("J", "F");
+        assertEquals(Arrays.asList("J", "M"), Arrays.asList(session.getEvidence().keySet().toArray()));
+        assertEquals(bayesNet.answerQuery("P(B=T|J=F,M=F),2").getProbability(), session.query("P(B=T),2").getProbability());
+    }
+
+    @Test
+    void testNetworkChangeDropsMemo() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        InferenceSession session = new InferenceSession(bayesNet);
+        session.addEvidence("J", "T");
+        session.addEvidence("M", "T");
+        double before = session.query("P(B=T),3").getProbability();
+        assertTrue(session.getMemoSize() > 0);
+
+        bayesNet.addDependency("B", Arrays.asList(), new double[]{0.1, 0.9});
+        double after = session.query("P(B=T),3").getProbability();
+        assertNotEquals(before, after);
+        assertEquals(bayesNet.answerQuery("P(B=T|J=T,M=T),3").getProbability(), after);
+    }
+
+    @Test
+    void testInvalidInput() throws Exception {
+        InferenceSession session = new InferenceSession(BifXmlLoader.load("alarm_net.xml"));
+        assertThrows(IllegalArgumentException.class, () -> session.addEvidence("X", "T"));
+        assertThrows(IllegalArgumentException.class, () -> session.addEvidence("J", "maybe"));
+        assertThrows(IllegalArgumentException.class, () -> session.query("P(B=T)"));
+        assertTrue(session.getEvidence().isEmpty());
+    }
+
+    @Test
+    void testQueryEvidenceOverridesSession() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        InferenceSession session = new InferenceSession(bayesNet);
+        session.addEvidence("J", "T");
+        session.addEvidence("M", "T");
+        for (char method : new char[]{'2', '3'}) {
+            QueryResult result = session.query("P(B=T|J=F)," + method);
+            assertEquals(bayesNet.answerQuery("P(B=T|J=F,M=T)," + method).getProbability(), result.getProbability(), 1e-12);
+        }
+        assertEquals("T", session.getEvidence().get("J"));
+    }
+
+    @Test
+    void testSessionEvidenceOnQueryVariable() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        InferenceSession session = new InferenceSession(bayesNet);
+        session.addEvidence("B", "F");
+        session.addEvidence("J", "T");
+        for (char method : new char[]{'2', '3'}) {
+            QueryResult result = session.query("P(B=T)," + method);
+            assertFalse(Double.isNaN(result.getProbability()));
+            assertEquals(bayesNet.answerQuery("P(B=T|J=T)," + method).getProbability(), result.getProbability(), 1e-12);
+        }
+        assertEquals(bayesNet.answerQuery("P(E=T|B=F,J=T),3").getProbability(), session.query("P(E=T),3").getProbability(), 1e-12);
+    }
+}
@@ -0,0 +1,77 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static bayesnet.TestFactor.ListOf;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestInteractionGraph {
+
+    private static Variable variable(String name, int cardinality) {
+        List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < cardinality; i++) {
+            outcomes.add("v" + i);
+        }
+        return new Variable(name, outcomes);
+    }
+
+    private static Factor edge(Variable a, Variable b) {
+        return new Factor(ListOf(a, b), new double[a.getOutcomes().size() * b.getOutcomes().size()]);
+    }
+
+    /**
+     * @return two cycles of 4 variables, one of binary variables and one of variables with 10 outcomes
+     */
+    private static List<Factor> twoCycles(List<Variable> small, List<Variable> large) {
+        List<Factor> factors = new ArrayList<>();
+        for (List<Variable> cycle : ListOf(small, large)) {
+            for (int i = 0; i < cycle.size(); i++) {
+                factors.add(edge(cycle.get(i), cycle.get((i + 1) % cycle.size())));
+            }
+        }
+        return factors;
+    }
+
+    @Test
+    void testWeightedHeuristics() {
+        List<Variable> small = ListOf(variable("A", 2), variable("B", 2), variable("C", 2), variable("D", 2));
+        List<Variable> large = ListOf(variable("W", 10), variable("X", 10), variable("Y", 10), variable("Z", 10));
+        InteractionGraph graph = new InteractionGraph(twoCycles(small, large));
+        Set<Variable> all = new HashSet<>(small);
+        all.addAll(large);
+
+        // every variable adds one fill-in edge, but the small cycle makes smaller factors
+        for (InteractionGraph.Heuristic heuristic : ListOf(InteractionGraph.Heuristic.WEIGHTED_MIN_FILL, InteractionGraph.Heuristic.MIN_WEIGHT)) {
+            List<Variable> order = graph.eliminationOrder(heuristic, all);
+            assertEquals(new HashSet<>(small), new HashSet<>(order.subList(0, 4)), heuristic.name());
+            assertEquals(new HashSet<>(large), new HashSet<>(order.subList(4, 8)), heuristic.name());
+            assertEquals(1000, graph.largestFactorSize(order), heuristic.name());
+        }
+        assertEquals(8, graph.largestFactorSize(graph.minFillOrder(new HashSet<>(small))));
+        assertEquals(1, graph.largestFactorSize(new ArrayList<>()));
+    }
+
+    @Test
+    void testOrdersOnlyTheGivenVariables() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        List<Factor> factors = new ArrayList<>();
+        for (Variable variable : bayesNet.variables.values()) {
+            factors.add(variable.getFactor());
+        }
+        InteractionGraph graph = new InteractionGraph(factors);
+        Set<Variable> hidden = new HashSet<>(bayesNet.variables.values());
+        hidden.remove(bayesNet.variables.get("D1"));
+        hidden.remove(bayesNet.variables.get("A1"));
+
+        for (InteractionGraph.Heuristic heuristic : InteractionGraph.Heuristic.values()) {
+            List<Variable> order = graph.eliminationOrder(heuristic, hidden);
+            assertEquals(hidden.size(), order.size(), heuristic.name());
+            assertEquals(hidden, new HashSet<>(order), heuristic.name());
+            assertTrue(graph.largestFactorSize(order) >= 2, heuristic.name());
+        }
+        assertEquals(graph.eliminationOrder(InteractionGraph.Heuristic.MIN_FILL, hidden), graph.minFillOrder(hidden));
+        assertEquals(graph.eliminationOrder(InteractionGraph.Heuristic.MIN_DEGREE, hidden), graph.minDegreeOrder(hidden));
+    }
+}
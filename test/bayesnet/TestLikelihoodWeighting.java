@@ -0,0 +1,91 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLikelihoodWeighting {
+
+    @Test
+    void testEstimatesMatchExactAnswers() throws Exception {
+        assertEstimatesMatch("alarm_net.xml", "P(J=T|B=T)", "P(B=T|A=T)", "P(E=F|J=T,B=F)", "P(A=T,M=F|E=T)");
+        assertEstimatesMatch("big_net.xml", "P(D1=T|B0=v3,C2=v1)", "P(A1=T|D1=T)", "P(C2=v3|A2=F,B3=T)");
+    }
+
+    private static void assertEstimatesMatch(String fileName, String... queries) throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load(fileName);
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withTargetHalfWidth(0.002));
+        for (String query : queries) {
+            double exact = bayesNet.answerQuery(query + ",3").getProbability();
+            QueryResult estimate = bayesNet.answerQuery(query + ",S");
+            assertTrue(estimate.getStandardError() > 0, query);
+            // 5 standard errors: a false alarm is very unlikely, and the seed is fixed anyway
+            assertEquals(exact, estimate.getProbability(), 5 * estimate.getStandardError(), query);
+        }
+    }
+
+    @Test
+    void testEarlyStop() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(200_000).withTargetHalfWidth(0.01));
+        QueryResult early = bayesNet.answerQuery("P(J=T|B=T),S");
+        assertTrue(early.getSampleCount() < 200_000);
+        assertTrue(1.96 * early.getStandardError() <= 0.01);
+
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(200_000).withTargetHalfWidth(0));
+        QueryResult full = bayesNet.answerQuery("P(J=T|B=T),S");
+        assertEquals(200_000, full.getSampleCount());
+        assertTrue(full.getStandardError() < early.getStandardError());
+    }
+
+    @Test
+    void testRareQuery() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withMaxSamples(200_000));
+        // P = 3e-7: no sample matches, which is not a converged estimate of 0
+        double exact = bayesNet.answerQuery("P(B=T,E=T|J=F),3").getProbability();
+        QueryResult rare = bayesNet.answerQuery("P(B=T,E=T|J=F),S");
+        assertEquals(200_000, rare.getSampleCount());
+        assertTrue(rare.getStandardError() > 0);
+        assertEquals(exact, rare.getProbability(), 5 * rare.getStandardError());
+
+        // P = 1.6e-4: sampling goes on until enough samples match
+        exact = bayesNet.answerQuery("P(B=T|J=F),3").getProbability();
+        QueryResult unlikely = bayesNet.answerQuery("P(B=T|J=F),S");
+        assertTrue(unlikely.getSampleCount() > 100_000);
+        assertEquals(exact, unlikely.getProbability(), 5 * unlikely.getStandardError());
+        assertEquals(exact, unlikely.getProbability(), exact / 2);
+
+        // a wide target still draws the minimal number of samples
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withTargetHalfWidth(0.5).withMinSamples(20_000));
+        assertTrue(bayesNet.answerQuery("P(J=T|B=T),S").getSampleCount() >= 20_000);
+    }
+
+    @Test
+    void testDeterministic() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        bayesNet.setSamplingOptions(SamplingOptions.defaults().withSamplers(8).withMaxSamples(80_000).withTargetHalfWidth(0));
+        String query = "P(A1=T|D1=T,C2=v1),S";
+        QueryResult expected = bayesNet.answerQuery(query);
+
+        // the same estimate on one thread, and with another network instance
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            QueryResult oneThread = pool.submit(() -> bayesNet.answerQuery(query)).get();
+            assertEquals(expected.getProbability(), oneThread.getProbability());
+            assertEquals(expected.getStandardError(), oneThread.getStandardError());
+        } finally {
+            pool.shutdown();
+        }
+        BayesNet other = BifXmlLoader.load("big_net.xml");
+        other.setSamplingOptions(bayesNet.getSamplingOptions());
+        assertEquals(expected.getProbability(), other.answerQuery(query).getProbability());
+
+        // another seed, another estimate
+        bayesNet.setSamplingOptions(bayesNet.getSamplingOptions().withSeed(7));
+        assertTrue(expected.getProbability() != bayesNet.answerQuery(query).getProbability());
+    }
+}
@@ -0,0 +1,67 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMemoryBudget {
+
+    @Test
+    void testPredictedPeakFactorSize() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        List<String> queries = Arrays.asList("P(C1=T|C3=F,B3=F),2", "P(C1=T|C3=F,B3=F),3", "P(D1=T|A3=T,B3=F),2", "P(D1=T|A3=T,B3=F),3");
+        List<QueryResult> predicted = bayesNet.answerQueries(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            QueryResult result = bayesNet.answerQuery(queries.get(i));
+            assertEquals(predicted.get(i).getPeakFactorSize(), result.getPeakFactorSize(), queries.get(i));
+        }
+        assertEquals(144, predicted.get(0).getPeakFactorSize());
+        assertEquals(48, predicted.get(1).getPeakFactorSize());
+        assertEquals(0, bayesNet.answerQuery("P(C1=T|C3=F,B3=F),1").getPeakFactorSize());
+    }
+
+    @Test
+    void testCheaperOrder() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        double expected = bayesNet.answerQuery("P(C1=T|C3=F,B3=F),2").getProbability();
+
+        // the order by name needs 144 rows, other orders need 48
+        bayesNet.setMemoryBudget(MemoryBudget.ofBytes(48 * Double.BYTES));
+        QueryResult result = bayesNet.answerQuery("P(C1=T|C3=F,B3=F),2");
+        assertEquals(expected, result.getProbability(), 1e-12);
+        assertTrue(result.getPeakFactorSize() <= 48);
+        assertEquals(0, result.getSampleCount());
+
+        // the junction tree has larger cliques, method 4 eliminates instead
+        QueryResult junctionTree = bayesNet.answerQuery("P(C1=T|C3=F,B3=F),4");
+        assertEquals(expected, junctionTree.getProbability(), 1e-12);
+        assertEquals(48, junctionTree.getPeakFactorSize());
+    }
+
+    @Test
+    void testFallbacks() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        double expected = bayesNet.answerQuery("P(D1=T|A3=T,B3=F),3").getProbability();
+
+        bayesNet.setMemoryBudget(MemoryBudget.ofBytes(2 * Double.BYTES));
+        MemoryBudgetExceededException exception = assertThrows(MemoryBudgetExceededException.class,
+                () -> bayesNet.answerQuery("P(D1=T|A3=T,B3=F),3"));
+        assertTrue(exception.getMessage().contains("D1|A3,B3|3"), exception.getMessage());
+        assertEquals(2, exception.getMaxFactorSize());
+        assertTrue(exception.getFactorSize() > 2);
+        // enumeration allocates no factor
+        assertEquals(expected, bayesNet.answerQuery("P(D1=T|A3=T,B3=F),1").getProbability(), 1e-12);
+
+        bayesNet.setMemoryBudget(MemoryBudget.ofBytes(2 * Double.BYTES).withFallback(MemoryBudget.Fallback.SAMPLING));
+        for (QueryResult result : Arrays.asList(bayesNet.answerQuery("P(D1=T|A3=T,B3=F),3"),
+                bayesNet.answerQueries(Arrays.asList("P(D1=T|A3=T,B3=F),3")).get(0))) {
+            assertTrue(result.getSampleCount() > 0);
+            assertEquals(expected, result.getProbability(), 0.02);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> MemoryBudget.ofBytes(4));
+    }
+}
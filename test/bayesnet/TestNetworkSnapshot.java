@@ -0,0 +1,77 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestNetworkSnapshot {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTrip() throws Exception {
+        for (String fileName : new String[]{"alarm_net.xml", "big_net.xml", "family.xml"}) {
+            BayesNet expected = BifXmlLoader.load(fileName);
+            String snapshot = tempDir.resolve(fileName + NetworkSnapshot.EXTENSION).toString();
+            NetworkSnapshot.save(expected, snapshot);
+            BayesNet actual = NetworkSnapshot.load(snapshot);
+
+            // the same variables, in the same iteration order, with the same parents and tables
+            List<Variable> expectedVariables = new ArrayList<>(expected.variables.values());
+            List<Variable> actualVariables = new ArrayList<>(actual.variables.values());
+            assertEquals(expectedVariables, actualVariables, fileName);
+            for (int i = 0; i < expectedVariables.size(); i++) {
+                Variable expectedVariable = expectedVariables.get(i);
+                Variable actualVariable = actualVariables.get(i);
+                assertEquals(expectedVariable.getOutcomes(), actualVariable.getOutcomes());
+                assertEquals(expectedVariable.getParents(), actualVariable.getParents());
+                assertArrayEquals(expectedVariable.getFactor().getValues(), actualVariable.getFactor().getValues());
+            }
+        }
+
+        BayesNet alarm = NetworkSnapshot.load(tempDir.resolve("alarm_net.xml" + NetworkSnapshot.EXTENSION).toString());
+        QueryResult result = alarm.answerQuery("P(B=T|J=T,M=T),3");
+        assertEquals(0.28417, result.getProbability(), 0.000005);
+        assertEquals(7, result.getSumCount());
+        assertEquals(16, result.getProductCount());
+    }
+
+    @Test
+    void testNotASnapshot() throws Exception {
+        Path notASnapshot = tempDir.resolve("alarm_net" + NetworkSnapshot.EXTENSION);
+        Files.copy(Path.of("alarm_net.xml"), notASnapshot);
+        assertThrows(IOException.class, () -> NetworkSnapshot.load(notASnapshot.toString()));
+
+        // a truncated snapshot
+        Path snapshot = tempDir.resolve("big_net" + NetworkSnapshot.EXTENSION);
+        NetworkSnapshot.save(BifXmlLoader.load("big_net.xml"), snapshot.toString());
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Path truncated = tempDir.resolve("truncated" + NetworkSnapshot.EXTENSION);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 12));
+        assertThrows(IOException.class, () -> NetworkSnapshot.load(truncated.toString()));
+    }
+
+    @Test
+    void testVariableWithoutCpt() {
+        BayesNet bayesNet = new BayesNet();
+        bayesNet.addVariable("A", Arrays.asList("T", "F"));
+        bayesNet.addVariable("B", Arrays.asList("T", "F"));
+        bayesNet.addDependency("A", new ArrayList<>(), new double[]{0.3, 0.7});
+        Path snapshot = tempDir.resolve("incomplete" + NetworkSnapshot.EXTENSION);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> NetworkSnapshot.save(bayesNet, snapshot.toString()));
+        assertEquals("Variable B has no CPT", e.getMessage());
+        assertFalse(Files.exists(snapshot));
+    }
+}
@@ -0,0 +1,59 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOrderingSearch {
+
+    @Test
+    void testNeverWorseThanMinFill() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        List<Factor> factors = new ArrayList<>();
+        for (Variable variable : bayesNet.variables.values()) {
+            factors.add(variable.getFactor());
+        }
+        InteractionGraph graph = new InteractionGraph(factors);
+        Set<Variable> hidden = new HashSet<>(bayesNet.variables.values());
+        hidden.remove(bayesNet.variables.get("D1"));
+
+        long minFillSize = graph.totalTableSize(graph.minFillOrder(hidden));
+        for (int searchers : new int[]{1, 3}) {
+            List<Variable> order = new OrderingSearch(20, searchers, 42).search(graph, hidden);
+            assertEquals(hidden, new HashSet<>(order));
+            assertEquals(hidden.size(), order.size());
+            assertTrue(graph.totalTableSize(order) <= minFillSize);
+        }
+    }
+
+    @Test
+    void testQueriesWithSearch() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("big_net.xml");
+        BayesNet searchingNet = BifXmlLoader.load("big_net.xml");
+        OrderingSearch search = new OrderingSearch(5, 2, 42);
+        searchingNet.setOrderingSearch(search);
+        String[] queries = {"P(D1=T|B0=v3,C2=v1),3", "P(A1=T|D1=T,B2=F),3", "P(C2=v1|A2=T,B0=v2),4", "P(B3=T|C1=T,A1=F),3"};
+        for (String query : queries) {
+            assertEquals(bayesNet.answerQuery(query).getProbability(), searchingNet.answerQuery(query).getProbability(), 1e-12, query);
+        }
+        assertEquals(0, search.getHits());
+        assertTrue(search.size() > 0);
+
+        // the orders outlive the plans
+        searchingNet.setDSeparationPruning(false);
+        searchingNet.answerQuery(queries[0]);
+        assertEquals(1, search.getHits());
+
+        // but not a change of the network
+        searchingNet.addDependency("A1", Arrays.asList(), new double[]{0.3, 0.7});
+        assertEquals(0, search.size());
+    }
+
+    @Test
+    void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderingSearch(-1));
+        assertThrows(IllegalArgumentException.class, () -> new OrderingSearch(10, 0, 42));
+    }
+}
@@ -0,0 +1,108 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestQueryMetrics {
+
+    @Test
+    void testHistogram() {
+        for (long value : new long[]{0, 1, 127, 128, 129, 255, 256, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assertTrue(Histogram.lowestValue(index) <= value && value <= Histogram.highestValue(index), Long.toString(value));
+            // a bucket is at most 1/64 of its values wide
+            assertTrue(Histogram.highestValue(index) - Histogram.lowestValue(index) <= value / 64, Long.toString(value));
+        }
+
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(Arrays.stream(values).sum(), histogram.getSum());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, histogram.getValueAtPercentile(percentile), expected / 64.0, Double.toString(percentile));
+        }
+
+        Histogram snapshot = histogram.snapshot(true);
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length / 2 - 1], snapshot.getValueAtPercentile(50), values[values.length / 2] / 64.0);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertThrows(IllegalArgumentException.class, () -> histogram.record(-1));
+    }
+
+    @Test
+    void testPhases() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        QueryMetrics metrics = new QueryMetrics();
+        bayesNet.setQueryMetrics(metrics);
+        for (String query : Arrays.asList("P(B=T|J=T,M=T),3", "P(B=F|J=T,M=F),3", "P(B=T|J=F,M=T),3")) {
+            bayesNet.answerQuery(query);
+        }
+        // the three queries share one plan
+        assertEquals(3, metrics.getPhase(QueryMetrics.Phase.PARSE).getCount());
+        assertEquals(1, metrics.getPhase(QueryMetrics.Phase.RELEVANCE).getCount());
+        assertEquals(1, metrics.getPhase(QueryMetrics.Phase.ORDER).getCount());
+        for (QueryMetrics.Phase phase : Arrays.asList(QueryMetrics.Phase.SET_EVIDENCE, QueryMetrics.Phase.ELIMINATE,
+                QueryMetrics.Phase.FINAL_JOIN, QueryMetrics.Phase.QUERY)) {
+            assertEquals(3, metrics.getPhase(phase).getCount(), phase.name());
+        }
+
+        QueryResult result = bayesNet.answerQuery("P(B=T|J=T,M=T),2");
+        assertEquals(2, metrics.getPhase(QueryMetrics.Phase.RELEVANCE).getCount());
+        assertEquals(1, metrics.getPhase(QueryMetrics.Phase.ORDER).getCount());
+        assertEquals(4, metrics.getEliminatedVariables().getCount());
+        assertEquals(2, metrics.getEliminatedVariables().getMax()); // A and E
+        assertEquals(result.getPeakFactorSize(), metrics.getPeakFactorSize().getMax());
+        assertTrue(metrics.getTotalFactorSize().getMin() > metrics.getPeakFactorSize().getMax());
+
+        // joint queries and enumeration only record the whole query
+        bayesNet.answerQuery("P(B=F,E=T,A=T,M=T,J=F)");
+        bayesNet.answerQuery("P(B=T|J=T,M=T),1");
+        assertEquals(6, metrics.getPhase(QueryMetrics.Phase.QUERY).getCount());
+        assertEquals(4, metrics.getEliminatedVariables().getCount());
+
+        String report = metrics.report(true);
+        assertTrue(report.contains("set_evidence"), report);
+        assertEquals(0, metrics.getPhase(QueryMetrics.Phase.QUERY).getCount());
+
+        bayesNet.setQueryMetrics(null);
+        bayesNet.answerQuery("P(B=T|J=T,M=T),3");
+        assertEquals(0, metrics.getPhase(QueryMetrics.Phase.QUERY).getCount());
+    }
+
+    @Test
+    void testPeriodicReport() throws Exception {
+        BayesNet bayesNet = BifXmlLoader.load("alarm_net.xml");
+        BlockingQueue<String> reports = new ArrayBlockingQueue<>(100);
+        try (QueryMetrics metrics = new QueryMetrics()) {
+            bayesNet.setQueryMetrics(metrics);
+            bayesNet.answerQueries(Arrays.asList("P(B=T|J=T,M=T),2", "P(E=T|J=T,M=T),2"));
+            metrics.startReporting(10, TimeUnit.MILLISECONDS, reports::offer);
+            assertThrows(IllegalStateException.class, () -> metrics.startReporting(1, TimeUnit.SECONDS, reports::offer));
+
+            String first = reports.poll(10, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertTrue(first.matches("(?s).*\nquery +2 .*"), first);
+            // the next reports start over
+            String next = reports.poll(10, TimeUnit.SECONDS);
+            assertTrue(next.matches("(?s).*\nquery +0 .*"), next);
+        }
+    }
+}
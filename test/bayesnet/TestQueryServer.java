@@ -0,0 +1,94 @@
+package bayesnet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestQueryServer {
+
+    @Test
+    void testPipelinedQueries() throws Exception {
+        // the queries of input.txt, and their answers in output.txt
+        List<String> queries = Files.readAllLines(Paths.get("input.txt"));
+        queries = queries.subList(1, queries.size());
+        List<String> answers = Files.readAllLines(Paths.get("output.txt"));
+
+        // fewer permits than requests, so the connection waits for the workers
+        try (QueryServer server = new QueryServer(2, 3);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.start(0))) {
+            List<String> requests = new ArrayList<>(Arrays.asList("LOAD alarm alarm_net.xml", "LIST"));
+            List<String> expected = new ArrayList<>(Arrays.asList("OK alarm 5", "OK alarm"));
+            for (int i = 0; i < 2000; i++) {
+                requests.add("QUERY alarm " + queries.get(i % queries.size()));
+                expected.add(answers.get(i % queries.size()));
+            }
+            requests.add("QUIT");
+
+            Thread client = new Thread(() -> {
+                try {
+                    Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                    for (String request : requests) {
+                        writer.write(request + "\n");
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            client.start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> responses = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                responses.add(line);
+            }
+            client.join();
+            assertEquals(expected, responses);
+        }
+    }
+
+    @Test
+    void testStandardStreams() throws Exception {
+        QueryServer server = new QueryServer(1, 0);
+        server.register(QueryServer.DEFAULT_NETWORK, BifXmlLoader.load("alarm_net.xml"));
+        String requests = String.join("\n",
+                "P(B=T|J=T,M=T),2",
+                "",
+                "QUERY family P(B=T),2",
+                "P(X=T),2",
+                "LOAD family",
+                "LOAD family missing.xml",
+                "UNLOAD default",
+                "P(B=T|J=T,M=T),2",
+                "LIST",
+                "QUIT",
+                "P(B=T|J=T,M=T),2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out);
+        server.close();
+
+        String[] responses = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(8, responses.length, Arrays.toString(responses));
+        assertEquals("0.28417,7,16", responses[0]);
+        assertEquals("ERROR Unknown network: family", responses[1]);
+        assertTrue(responses[2].startsWith("ERROR "), responses[2]);
+        assertEquals("ERROR Usage: LOAD <name> <file>", responses[3]);
+        assertTrue(responses[4].startsWith("ERROR "), responses[4]);
+        assertEquals("OK default", responses[5]);
+        assertEquals("ERROR Unknown network: default", responses[6]);
+        assertEquals("OK ", responses[7]);
+
+        assertThrows(IllegalArgumentException.class, () -> new QueryServer(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> server.register("a b", null));
+    }
+}